@@ -26,13 +26,15 @@ package com.redhat.jenkins.nodesharingbackend;
 import com.redhat.jenkins.nodesharing.ActionFailed;
 import com.redhat.jenkins.nodesharing.ConfigRepo;
 import com.redhat.jenkins.nodesharing.ExecutorJenkins;
+import com.redhat.jenkins.nodesharing.Metrics;
 import com.redhat.jenkins.nodesharing.NodeDefinition;
 import com.redhat.jenkins.nodesharing.RestEndpoint;
+import com.redhat.jenkins.nodesharing.RestMetrics;
 import com.redhat.jenkins.nodesharing.transport.DiscoverRequest;
 import com.redhat.jenkins.nodesharing.transport.DiscoverResponse;
-import com.redhat.jenkins.nodesharing.transport.Entity;
 import com.redhat.jenkins.nodesharing.transport.NodeStatusRequest;
 import com.redhat.jenkins.nodesharing.transport.NodeStatusResponse;
+import com.redhat.jenkins.nodesharing.transport.RefreshConfigRequest;
 import com.redhat.jenkins.nodesharing.transport.ReportUsageRequest;
 import com.redhat.jenkins.nodesharing.transport.ReportUsageResponse;
 import com.redhat.jenkins.nodesharing.transport.ReportWorkloadRequest;
@@ -47,6 +49,8 @@ import hudson.model.Queue;
 import hudson.model.RootAction;
 import jenkins.model.Jenkins;
 import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpPost;
+import org.eclipse.jgit.lib.ObjectId;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.StaplerRequest;
@@ -64,6 +68,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 /**
@@ -77,6 +82,11 @@ public class Api implements RootAction {
 
     private static final String HIDDEN = null;
 
+    // Refer to node definitions in utilizeNode instead of sending them, requires executors to support that
+    private static final boolean SEND_DEFINITION_REFERENCES = Boolean.getBoolean(
+            "com.redhat.jenkins.nodesharingbackend.Api.SEND_DEFINITION_REFERENCES"
+    );
+
     private final @Nonnull String version;
 
     public Api() {
@@ -127,9 +137,27 @@ public class Api implements RootAction {
     public boolean utilizeNode(@Nonnull ExecutorJenkins executor, @Nonnull ShareableNode node) {
         Pool pool = Pool.getInstance();
         String configRepoUrl = pool.getConfigRepoUrl();
-        UtilizeNodeRequest request = new UtilizeNodeRequest(configRepoUrl, version, node.getNodeDefinition());
+        NodeDefinition definition = node.getNodeDefinition();
         RestEndpoint rest = executor.getRest(configRepoUrl, pool.getCredential());
         try {
+            if (SEND_DEFINITION_REFERENCES) {
+                ConfigRepo.Snapshot config = pool.getConfig();
+                ObjectId blob = config.getBlob(definition);
+                if (blob != null) {
+                    UtilizeNodeRequest reference = new UtilizeNodeRequest(
+                            configRepoUrl, version, definition, config.getSource(), blob.name()
+                    );
+                    try {
+                        rest.executeRequest(rest.post("utilizeNode"), reference, UtilizeNodeResponse.class);
+                        return true;
+                    } catch (ActionFailed.RequestFailed ex) {
+                        if (ex.getStatusCode() != HttpStatus.SC_PRECONDITION_FAILED) throw ex;
+                        LOGGER.fine("Executor " + executor.getName() + " unable to resolve " + definition.getName() + ", sending inline");
+                    }
+                }
+            }
+
+            UtilizeNodeRequest request = new UtilizeNodeRequest(configRepoUrl, version, definition);
             rest.executeRequest(rest.post("utilizeNode"), request, UtilizeNodeResponse.class);
             return true;
         } catch (ActionFailed.RequestFailed ex) {
@@ -153,7 +181,21 @@ public class Api implements RootAction {
         String configRepoUrl = pool.getConfigRepoUrl();
         ReportUsageRequest request = new ReportUsageRequest(configRepoUrl, version);
         RestEndpoint rest = owner.getRest(configRepoUrl, pool.getCredential());
-        return rest.executeRequest(rest.post("reportUsage"), request, ReportUsageResponse.class);
+        return rest.executeCoalescedRequest(rest.post("reportUsage"), request, ReportUsageResponse.class);
+    }
+
+    /**
+     * Query executor Jenkins to report shared hosts it uses without blocking the calling thread.
+     *
+     * @param owner Jenkins instance to query.
+     * @see #reportUsage(ExecutorJenkins)
+     */
+    public @Nonnull CompletableFuture<ReportUsageResponse> reportUsageAsync(@Nonnull ExecutorJenkins owner) {
+        Pool pool = Pool.getInstance();
+        String configRepoUrl = pool.getConfigRepoUrl();
+        ReportUsageRequest request = new ReportUsageRequest(configRepoUrl, version);
+        RestEndpoint rest = owner.getRest(configRepoUrl, pool.getCredential());
+        return rest.executeCoalescedRequestAsync(rest.post("reportUsage"), request, ReportUsageResponse.class);
     }
 
     /**
@@ -178,34 +220,61 @@ public class Api implements RootAction {
         String configRepoUrl = pool.getConfigRepoUrl();
         NodeStatusRequest request = new NodeStatusRequest(configRepoUrl, version, nodeName);
         RestEndpoint rest = jenkins.getRest(configRepoUrl, pool.getCredential());
-        NodeStatusResponse nodeStatus = rest.executeRequest(rest.post("nodeStatus"), request, NodeStatusResponse.class);
+        NodeStatusResponse nodeStatus = rest.executeCoalescedRequest(rest.post("nodeStatus"), request, NodeStatusResponse.class);
         return nodeStatus.getStatus();
     }
 
+    /**
+     * Ask executor Jenkins to refresh config repository as orchestrator have applied new revision.
+     *
+     * @param executor Jenkins instance to notify.
+     * @param revision Config repository revision applied.
+     * @return Future completed once executor accepts the request.
+     */
+    public @Nonnull CompletableFuture<?> refreshConfigAsync(@Nonnull ExecutorJenkins executor, @Nonnull String revision) {
+        Pool pool = Pool.getInstance();
+        String configRepoUrl = pool.getConfigRepoUrl();
+        RefreshConfigRequest request = new RefreshConfigRequest(configRepoUrl, version, revision);
+        RestEndpoint rest = executor.getRest(configRepoUrl, pool.getCredential());
+        HttpPost method = rest.post("refreshConfig");
+        return rest.executeRequestAsync(method, request, new RestEndpoint.AbstractResponseHandler<Void>(method) {});
+    }
+
     //// Incoming
 
+    /**
+     * Refresh config repository once it has changed, intended to be called by push hook of the repository.
+     *
+     * The refresh is performed in background.
+     */
+    @RequirePOST @RestMetrics.Measured("refreshConfig")
+    public void doRefreshConfig(@Nonnull final StaplerRequest req, @Nonnull final StaplerResponse rsp) {
+        Jenkins.getInstance().checkPermission(RestEndpoint.RESERVE);
+        Pool.Updater.getInstance().schedule();
+    }
+
     /**
      * Initial request to test the connection/compatibility.
      */
-    @RequirePOST
+    @RequirePOST @RestMetrics.Measured("discover")
     public void doDiscover(StaplerRequest req, StaplerResponse rsp) throws IOException {
         Jenkins.getInstance().checkPermission(RestEndpoint.RESERVE);
 
         Pool pool = Pool.getInstance();
         Collection<NodeDefinition> nodes = pool.getConfig().getNodes().values(); // Fail early when there is no config
 
-        DiscoverRequest request = Entity.fromInputStream(req.getInputStream(), DiscoverRequest.class);
+        DiscoverRequest request = RestEndpoint.readEntity(req, DiscoverRequest.class);
 
         String version = this.version;
         String configEndpoint = pool.getConfigRepoUrl();
 
         String executorUrl = request.getExecutorUrl();
         try {
-            pool.getConfig().getJenkinsByUrl(executorUrl);
+            RestMetrics.identifyRemote(req, pool.getConfig().getJenkinsByUrl(executorUrl).getUrl().toExternalForm());
         } catch (NoSuchElementException ex) {
             // Do not disclose any other diagnostics to executor not approved in config repo
             String diagnosis = unknownExecutor(executorUrl, configEndpoint);
-            new DiscoverResponse(configEndpoint, "N/A", diagnosis, Collections.<NodeDefinition>emptyList()).toOutputStream(rsp.getOutputStream());
+            RestEndpoint.writeEntity(req, rsp, new DiscoverResponse(configEndpoint, "N/A", diagnosis, Collections.<NodeDefinition>emptyList()));
             return;
         }
 
@@ -229,7 +298,7 @@ public class Api implements RootAction {
         }
 
         String diagnosis = diagnosisBuilder.toString();
-        new DiscoverResponse(configEndpoint, version, diagnosis, nodes).toOutputStream(rsp.getOutputStream());
+        RestEndpoint.writeEntity(req, rsp, new DiscoverResponse(configEndpoint, version, diagnosis, nodes));
     }
 
     /**
@@ -238,14 +307,14 @@ public class Api implements RootAction {
      * The order of items from orchestrator is preserved though not guaranteed to be exactly the same as the builds ware
      * scheduled on individual executor Jenkinses.
      */
-    @RequirePOST
+    @RequirePOST @RestMetrics.Measured("reportWorkload")
     public void doReportWorkload(@Nonnull final StaplerRequest req, @Nonnull final StaplerResponse rsp) throws IOException {
         Jenkins.getInstance().checkPermission(RestEndpoint.RESERVE);
 
         Pool pool = Pool.getInstance();
         final ConfigRepo.Snapshot config = pool.getConfig(); // Fail early when there is no config
 
-        final ReportWorkloadRequest request = Entity.fromInputStream(req.getInputStream(), ReportWorkloadRequest.class);
+        final ReportWorkloadRequest request = RestEndpoint.readEntity(req, ReportWorkloadRequest.class);
 
         final List<ReportWorkloadRequest.Workload.WorkloadItem> reportedItems = request.getWorkload().getItems();
         final ArrayList<ReservationTask> reportedTasks = new ArrayList<>(reportedItems.size());
@@ -258,6 +327,8 @@ public class Api implements RootAction {
             return;
         }
 
+        RestMetrics.identifyRemote(req, executor.getUrl().toExternalForm());
+
         for (ReportWorkloadRequest.Workload.WorkloadItem item : reportedItems) {
             reportedTasks.add(new ReservationTask(executor, item.getLabel(), item.getName(), item.getId()));
         }
@@ -285,7 +356,7 @@ public class Api implements RootAction {
         });
 
         String version = this.version;
-        new ReportWorkloadResponse(pool.getConfigRepoUrl(), version).toOutputStream(rsp.getOutputStream());
+        RestEndpoint.writeEntity(req, rsp, new ReportWorkloadResponse(pool.getConfigRepoUrl(), version));
     }
 
     private String unknownExecutor(String executorUrl, String configRepoUrl) {
@@ -295,12 +366,17 @@ public class Api implements RootAction {
     /**
      * Return node to orchestrator when no longer needed.
      */
-    @RequirePOST
+    @RequirePOST @RestMetrics.Measured("returnNode")
     public void doReturnNode(@Nonnull final StaplerRequest req, @Nonnull final StaplerResponse rsp) throws IOException {
         Jenkins.getInstance().checkPermission(RestEndpoint.RESERVE);
 
         String ocr = Pool.getInstance().getConfigRepoUrl(); // Fail early when there is no config
-        ReturnNodeRequest request = Entity.fromInputStream(req.getInputStream(), ReturnNodeRequest.class);
+        ReturnNodeRequest request = RestEndpoint.readEntity(req, ReturnNodeRequest.class);
+        try {
+            RestMetrics.identifyRemote(req, Pool.getInstance().getConfig().getJenkinsByUrl(request.getExecutorUrl()).getUrl().toExternalForm());
+        } catch (NoSuchElementException ex) {
+            // Recorded as unknown, the call is validated below
+        }
         String ecr = request.getConfigRepoUrl();
         if (!Objects.equals(ocr, ecr)) { // TODO we do not require this anywhere else, should we?
             rsp.getWriter().println("Unable to return node - config repo mismatch " + ocr + " != " + ecr);
@@ -349,4 +425,12 @@ public class Api implements RootAction {
         // TODO Report status
         rsp.setStatus(HttpServletResponse.SC_OK);
     }
+
+    /**
+     * Latencies and outcomes of REST calls as JSON, or in Prometheus text format with {@code ?format=prometheus}.
+     */
+    public void doMetrics(@Nonnull final StaplerRequest req, @Nonnull final StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        Metrics.write(req, rsp);
+    }
 }
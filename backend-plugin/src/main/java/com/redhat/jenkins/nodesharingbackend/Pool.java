@@ -28,6 +28,7 @@ import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
 import com.google.common.annotations.VisibleForTesting;
 import com.redhat.jenkins.nodesharing.ConfigRepo;
 import com.redhat.jenkins.nodesharing.ConfigRepoAdminMonitor;
+import com.redhat.jenkins.nodesharing.ConfigRepoRegistry;
 import com.redhat.jenkins.nodesharing.ExecutorJenkins;
 import com.redhat.jenkins.nodesharing.NodeDefinition;
 import com.redhat.jenkins.nodesharing.TaskLog;
@@ -62,6 +63,8 @@ import java.util.ArrayList;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -81,13 +84,18 @@ public class Pool extends GlobalConfiguration {
     // TODO this will be visible in UI on /systemInfo (permission Jenkins/Administer)
     public static final String PASSWORD_PROPERTY_NAME = "com.redhat.jenkins.nodesharingbackend.Pool.PASSWORD";
 
+    // Ask executors to refresh their config once new revision is applied
+    private static final boolean NOTIFY_EXECUTORS = Boolean.getBoolean(
+            "com.redhat.jenkins.nodesharingbackend.Pool.NOTIFY_EXECUTORS"
+    );
+
     @Extension
     public static final ConfigRepoAdminMonitor ADMIN_MONITOR = new ConfigRepoAdminMonitor();
     private static final String MONITOR_CONTEXT = "Primary Config Repo";
 
     private final Object configLock = new Object();
 
-    // TODO consider persisting in case of crash with broken config in repo
+    // Persisted by Updater so it is available after restart even when the config repo is not
     @GuardedBy("configLock")
     private @CheckForNull ConfigRepo.Snapshot config = null;
 
@@ -140,8 +148,9 @@ public class Pool extends GlobalConfiguration {
 
     private void updateConfig(@Nonnull ConfigRepo.Snapshot config) {
         boolean needsReconfiguration = false;
+        String oldRev;
         synchronized (configLock) {
-            String oldRev = this.config == null ? null : this.config.getSource();
+            oldRev = this.config == null ? null : this.config.getSource();
             String newRev = config.getSource();
             this.config = config;
             if (!newRev.equals(oldRev)) {
@@ -151,7 +160,10 @@ public class Pool extends GlobalConfiguration {
         }
 
         if (needsReconfiguration) {
-            updateOrchestrator(config);
+            updateOrchestrator(config, oldRev);
+            if (NOTIFY_EXECUTORS) {
+                notifyExecutors(config);
+            }
 
             // Start grid verification immediately after config repo change in a separate thread
             Computer.threadPoolForRemoting.submit(new Runnable() {
@@ -163,7 +175,20 @@ public class Pool extends GlobalConfiguration {
         }
     }
 
-    private void updateOrchestrator(final ConfigRepo.Snapshot config) {
+    // Executors are told to refresh their config not to wait for them to poll
+    private void notifyExecutors(@Nonnull ConfigRepo.Snapshot config) {
+        for (final ExecutorJenkins executor : config.getJenkinses()) {
+            Api.getInstance().refreshConfigAsync(executor, config.getSource()).whenComplete(new BiConsumer<Object, Throwable>() {
+                @Override public void accept(Object o, Throwable throwable) {
+                    if (throwable != null) {
+                        LOGGER.log(Level.FINE, "Unable to notify " + executor.getName() + " about config change", throwable);
+                    }
+                }
+            });
+        }
+    }
+
+    private void updateOrchestrator(final ConfigRepo.Snapshot config, @CheckForNull final String oldRev) {
         final Jenkins j = Jenkins.getInstance();
         // Use queue lock so pool changes appear atomic from perspective of Queue#maintian and Api#doReportWorkload
         Queue.withLock(new Runnable() {
@@ -194,6 +219,11 @@ public class Pool extends GlobalConfiguration {
                 added.removeAll(existing.keySet());
 
                 ArrayList<String> updated = new ArrayList<>(configured.keySet());
+                ConfigRepo.Snapshot.Diff diff = config.getDiff();
+                if (diff != null && diff.getBase().equals(oldRev)) {
+                    // Nodes are up to date with previous snapshot so only update those that have changed since
+                    updated.retainAll(diff.getChangedNodes());
+                }
                 updated.removeAll(removed);
                 updated.removeAll(added);
 
@@ -230,7 +260,13 @@ public class Pool extends GlobalConfiguration {
         jenkins.doQuietDown(); // Prevent builds to be scheduled during the process
         jenkins.getQueue().clear(); // Clear any items that might be there from before restart - we can get more recent here
         try {
-            Updater.getInstance().doRun();
+            Updater updater = Updater.getInstance();
+            if (updater.restore()) {
+                // Serve reservations from the last good config, reconcile with config repo in background
+                updater.schedule();
+            } else {
+                updater.doRun();
+            }
         } catch (PoolMisconfigured ex) {
             // Do not treat the fatally. Show inactive orchestrator instead with problems reported.
             ex.printStackTrace();
@@ -244,6 +280,7 @@ public class Pool extends GlobalConfiguration {
     public static final class Updater extends PeriodicWork {
         private static final File WORK_DIR = new File(Jenkins.getInstance().getRootDir(), "node-sharing");
         private static final File CONFIG_DIR = new File(WORK_DIR, "config");
+        private static final File SNAPSHOT_FILE = new File(WORK_DIR, "snapshot.xml");
 
         public static @Nonnull Updater getInstance() {
             ExtensionList<Updater> list = Jenkins.getInstance().getExtensionList(Updater.class);
@@ -251,13 +288,55 @@ public class Pool extends GlobalConfiguration {
             return list.iterator().next();
         }
 
+        // Polling is a fallback in case the changes are not pushed through Api#doRefreshConfig
+        private static final long POLLING_PERIOD = Long.getLong(
+                "com.redhat.jenkins.nodesharingbackend.Pool.Updater.POLLING_PERIOD", MIN
+        );
+
+        // Reused so unchanged config is neither cloned nor read again
+        private @CheckForNull ConfigRepo repo;
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        // Revision persisted in SNAPSHOT_FILE
+        private volatile @CheckForNull String savedRevision;
+
         @Override
         public long getRecurrencePeriod() {
-            return Functions.getIsUnitTest() ? Long.MAX_VALUE : MIN;
+            return Functions.getIsUnitTest() ? Long.MAX_VALUE : POLLING_PERIOD;
+        }
+
+        /**
+         * Run the update in background, unless already scheduled.
+         */
+        public void schedule() {
+            if (!scheduled.compareAndSet(false, true)) return;
+
+            Computer.threadPoolForRemoting.submit(new Runnable() {
+                @Override public void run() {
+                    scheduled.set(false);
+                    try {
+                        doRun();
+                    } catch (Exception ex) {
+                        LOGGER.log(Level.WARNING, "Config repo update failed", ex);
+                    }
+                }
+            });
         }
 
+        private synchronized @Nonnull ConfigRepo getConfigRepo(@Nonnull String configEndpoint) {
+            if (repo == null || !repo.getUrl().equals(configEndpoint)) {
+                if (repo != null) {
+                    ConfigRepoRegistry.release(repo.getUrl(), this);
+                }
+                repo = ConfigRepoRegistry.acquire(configEndpoint, CONFIG_DIR, this);
+            }
+            return repo;
+        }
+
+        // Serialized with scheduled runs and restore so older snapshot is never applied after newer one
         @Override @VisibleForTesting
-        public void doRun() throws Exception {
+        public synchronized void doRun() throws Exception {
             Pool pool = Pool.getInstance();
             String configEndpoint;
             try {
@@ -266,15 +345,49 @@ public class Pool extends GlobalConfiguration {
                 return;
             }
 
-            ConfigRepo repo = new ConfigRepo(configEndpoint, CONFIG_DIR);
+            ConfigRepo repo = getConfigRepo(configEndpoint);
 
             Pool.ADMIN_MONITOR.clear();
+            ConfigRepo.Snapshot snapshot;
             try {
-                pool.updateConfig(repo.getSnapshot());
+                snapshot = repo.getSnapshot();
+                pool.updateConfig(snapshot);
             } catch (IOException | TaskLog.TaskFailed ex) {
                 Pool.ADMIN_MONITOR.report(MONITOR_CONTEXT, ex);
+                return;
+            }
+
+            if (!snapshot.getSource().equals(savedRevision)) {
+                try {
+                    repo.save(snapshot, SNAPSHOT_FILE);
+                    savedRevision = snapshot.getSource();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Unable to persist config snapshot", ex);
+                }
             }
         }
+
+        /**
+         * Apply config snapshot persisted before restart, if any.
+         *
+         * @return true if the snapshot was restored.
+         */
+        public synchronized boolean restore() {
+            Pool pool = Pool.getInstance();
+            String configEndpoint;
+            try {
+                configEndpoint = pool.getConfigRepoUrl();
+            } catch (PoolMisconfigured ex) {
+                return false;
+            }
+
+            ConfigRepo.Snapshot snapshot = getConfigRepo(configEndpoint).restore(SNAPSHOT_FILE);
+            if (snapshot == null) return false;
+
+            savedRevision = snapshot.getSource();
+            pool.updateConfig(snapshot);
+            return true;
+        }
     }
 
     public static final class PoolMisconfigured extends RuntimeException implements HttpResponse {
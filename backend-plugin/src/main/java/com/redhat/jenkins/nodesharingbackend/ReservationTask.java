@@ -106,7 +106,7 @@ public class ReservationTask extends AbstractQueueTask implements AccessControll
     @Override public String getDisplayName() { return jenkins.getName(); }
 
     @Override public Label getAssignedLabel() {
-        // Always create new Label object to reflect changes in the node set
+        // Memoized by Jenkins, that keeps the node set of the Label up to date
         return Label.get(label);
     }
     public ExecutorJenkins getOwner() { return jenkins; }
@@ -241,6 +241,10 @@ public class ReservationTask extends AbstractQueueTask implements AccessControll
                         // non-exclusive lease would we risk by stopping the ReservationTask here.
                         LOGGER.log(Level.WARNING, "utilizeNode request timed out, continuing the reservation speculatively");
                         break;
+                    } catch (ActionFailed.CircuitOpen ex) {
+                        // The request was not sent at all, no need for the stacktrace
+                        LOGGER.warning(taskName + " failed to get the node utilized: " + ex.getMessage());
+                        return;
                     } catch (Throwable ex) {
                         LOGGER.log(Level.SEVERE, taskName + " failed to get the node utilized", ex);
                         return;
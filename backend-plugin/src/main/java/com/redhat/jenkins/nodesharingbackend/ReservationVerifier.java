@@ -26,7 +26,7 @@ package com.redhat.jenkins.nodesharingbackend;
 import com.google.common.annotations.VisibleForTesting;
 import com.redhat.jenkins.nodesharing.ConfigRepo;
 import com.redhat.jenkins.nodesharing.ExecutorJenkins;
-import com.redhat.jenkins.nodesharing.RestEndpoint;
+import com.redhat.jenkins.nodesharing.transport.ReportUsageResponse;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
 import hudson.ExtensionList;
@@ -46,6 +46,10 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -117,8 +121,10 @@ public class ReservationVerifier extends PeriodicWork {
 
         LOGGER.info("Collecting more samples to recover the grid state");
 
+        // Give the requests in progress time to complete so they are reflected in the next sample
+        long delay = getSamplingDelay(plans.get(0).keySet());
         try {
-            Thread.sleep(RestEndpoint.TIMEOUT * 2);
+            Thread.sleep(delay);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             return;
@@ -178,6 +184,33 @@ public class ReservationVerifier extends PeriodicWork {
         }
     }
 
+    /**
+     * Time for the requests in progress to complete, derived from timeouts of the executors involved.
+     *
+     * @return Delay in ms.
+     */
+    @VisibleForTesting
+    /*package*/ static long getSamplingDelay(@Nonnull Collection<ExecutorJenkins> executors) {
+        int timeout = 0;
+        for (ExecutorJenkins executor : executors) {
+            timeout = Math.max(timeout, Math.max(executor.getTimeout("utilizeNode"), executor.getTimeout("reportUsage")));
+        }
+        return 2L * timeout;
+    }
+
+    /**
+     * Time to wait for all concurrent reportUsage queries, covering both the connect and read timeout.
+     *
+     * @return Timeout in ms.
+     */
+    private static long getResponseTimeout(@Nonnull Collection<ExecutorJenkins> executors) {
+        int timeout = 0;
+        for (ExecutorJenkins executor : executors) {
+            timeout = Math.max(timeout, executor.getTimeout("reportUsage"));
+        }
+        return 2L * timeout;
+    }
+
     private static Map<ExecutorJenkins, PlannedFixup> computePlannedFixup(ConfigRepo.Snapshot config, Api api) {
         // When executor is removed from config repo, it might have ReservationTasks running for a while so it is
         // necessary to query these executors so the task completion can be detected.
@@ -222,14 +255,38 @@ public class ReservationVerifier extends PeriodicWork {
             @Nonnull Set<ExecutorJenkins> jenkinses, @Nonnull Api api
     ) {
         Map<ExecutorJenkins, Set<String>> responses = new HashMap<>();
+
+        // Query all executors at once so slow ones do not delay the others
+        Map<ExecutorJenkins, Future<ReportUsageResponse>> pending = new HashMap<>();
         for (ExecutorJenkins executorJenkins : jenkinses) {
             try {
-                responses.put(executorJenkins, new HashSet<>(api.reportUsage(executorJenkins).getUsedNodes()));
+                pending.put(executorJenkins, api.reportUsageAsync(executorJenkins));
             } catch (Exception e) {
                 responses.put(executorJenkins, null);
                 LOGGER.log(Level.SEVERE, "Jenkins master '" + executorJenkins + "' didn't respond correctly:", e);
             }
         }
+
+        // Do not let an executor stuck in the async queue block the verifier indefinitely
+        long deadline = System.currentTimeMillis() + getResponseTimeout(pending.keySet());
+        for (Map.Entry<ExecutorJenkins, Future<ReportUsageResponse>> entry : pending.entrySet()) {
+            ExecutorJenkins executorJenkins = entry.getKey();
+            Future<ReportUsageResponse> future = entry.getValue();
+            try {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                responses.put(executorJenkins, new HashSet<>(future.get(remaining, TimeUnit.MILLISECONDS).getUsedNodes()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                responses.put(executorJenkins, null);
+            } catch (ExecutionException e) {
+                responses.put(executorJenkins, null);
+                LOGGER.log(Level.SEVERE, "Jenkins master '" + executorJenkins + "' didn't respond correctly:", e.getCause());
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                responses.put(executorJenkins, null);
+                LOGGER.warning("Jenkins master '" + executorJenkins + "' did not respond in time");
+            }
+        }
         return responses;
     }
 
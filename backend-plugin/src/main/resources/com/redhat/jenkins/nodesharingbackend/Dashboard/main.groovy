@@ -1,7 +1,9 @@
 package com.redhat.jenkins.nodesharingbackend.Dashboard
 
+import com.redhat.jenkins.nodesharing.CircuitBreaker
 import com.redhat.jenkins.nodesharing.ConfigRepo
 import com.redhat.jenkins.nodesharing.ConfigRepoAdminMonitor
+import com.redhat.jenkins.nodesharing.RestEndpoint
 import com.redhat.jenkins.nodesharingbackend.Dashboard
 import com.redhat.jenkins.nodesharingbackend.Pool
 import com.redhat.jenkins.nodesharingbackend.Pool.PoolMisconfigured
@@ -19,6 +21,9 @@ try {
             th {
                 text("Executor Jenkins")
             }
+            th {
+                text("Connection")
+            }
         }
         snapshot.jenkinses.each { executor ->
             tr {
@@ -27,9 +32,22 @@ try {
                         text(executor.name)
                     }
                 }
+                td {
+                    CircuitBreaker breaker = executor.circuitBreaker
+                    if (breaker == null || breaker.state == CircuitBreaker.State.CLOSED) {
+                        text("OK")
+                    } else {
+                        text("${breaker.state} after ${breaker.consecutiveFailures} failures")
+                        if (breaker.retryAfter != null) {
+                            text(", retrying after ${breaker.retryAfter}")
+                        }
+                    }
+                }
             }
         }
     }
+    def poolStats = RestEndpoint.connectionPoolStats
+    p { text("REST connections leased: ${poolStats.leased}, available: ${poolStats.available}, pending: ${poolStats.pending}, max: ${poolStats.max}") }
 } catch (PoolMisconfigured ex) {
     div(class: "error") {
         a(href: ConfigRepoAdminMonitor.instance.url) {
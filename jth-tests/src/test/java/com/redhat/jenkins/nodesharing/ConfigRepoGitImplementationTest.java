@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.redhat.jenkins.nodesharing;
+
+import com.redhat.jenkins.nodesharing.utils.SlowTest;
+import com.redhat.jenkins.nodesharing.utils.TestUtils;
+import hudson.FilePath;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compare command line and in-process git implementations reading the same local repository.
+ */
+@Category(SlowTest.class)
+public class ConfigRepoGitImplementationTest {
+    private static final int TICKS = 20;
+
+    @Rule public JenkinsRule j = new JenkinsRule();
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void compareImplementations() throws Exception {
+        GitClient remote = TestUtils.createConfigRepo();
+        String url = "file://" + remote.getWorkTree().getRemote();
+        ConfigRepo cli = new ConfigRepo(url, tmp.newFolder("git"), "git");
+        ConfigRepo jgit = new ConfigRepo(url, tmp.newFolder("jgit"), "jgit");
+        RecordingListener cliChanges = new RecordingListener(cli);
+        RecordingListener jgitChanges = new RecordingListener(jgit);
+
+        ConfigRepo.Snapshot cliClone = cli.getSnapshot();
+        ConfigRepo.Snapshot jgitClone = jgit.getSnapshot();
+        assertSameSnapshot(cliClone, jgitClone);
+        File cliMarker = markClone(cli);
+        File jgitMarker = markClone(jgit);
+
+        // Nothing is transferred nor parsed when remote have not changed
+        for (int i = 0; i < TICKS; i++) {
+            assertSame(cliClone, cli.getSnapshot());
+            assertSame(jgitClone, jgit.getSnapshot());
+        }
+        assertEquals(1, cliChanges.snapshots.size());
+        assertEquals(1, jgitChanges.snapshots.size());
+
+        FilePath solarisXml = remote.getWorkTree().child("nodes/solaris1.acme.com.xml");
+        solarisXml.write(solarisXml.readToString().replace("solaris11", "solaris12"), "UTF-8");
+        remote.add("nodes/*");
+        remote.commit("Update");
+
+        ConfigRepo.Snapshot cliUpdate = cli.getSnapshot();
+        ConfigRepo.Snapshot jgitUpdate = jgit.getSnapshot();
+        assertSameSnapshot(cliUpdate, jgitUpdate);
+        assertNotEquals(cliClone.getSource(), cliUpdate.getSource());
+        assertEquals(2, cliChanges.snapshots.size());
+        assertEquals(2, jgitChanges.snapshots.size());
+
+        // Fetched into the existing clone, unchanged definitions carried over
+        assertTrue(cliMarker.exists());
+        assertTrue(jgitMarker.exists());
+        assertSame(cliClone.getNodes().get("win1.acme.com"), cliUpdate.getNodes().get("win1.acme.com"));
+        assertSame(jgitClone.getNodes().get("win1.acme.com"), jgitUpdate.getNodes().get("win1.acme.com"));
+        assertNotSame(cliClone.getNodes().get("solaris1.acme.com"), cliUpdate.getNodes().get("solaris1.acme.com"));
+    }
+
+    // File that would not survive the repository being cloned again
+    private File markClone(ConfigRepo repo) throws Exception {
+        File marker = new File(repo.getWorkingDir(), ".git/clone-marker");
+        assertTrue(marker.createNewFile());
+        return marker;
+    }
+
+    private static final class RecordingListener implements ConfigRepo.Listener {
+        private final List<ConfigRepo.Snapshot> snapshots = new ArrayList<>();
+
+        private RecordingListener(ConfigRepo repo) {
+            repo.addListener(this);
+        }
+
+        @Override public void onChange(@Nonnull ConfigRepo.Snapshot snapshot) {
+            snapshots.add(snapshot);
+        }
+    }
+
+    private void assertSameSnapshot(ConfigRepo.Snapshot expected, ConfigRepo.Snapshot actual) {
+        assertEquals(expected.getSource(), actual.getSource());
+        assertEquals(expected.getConfig(), actual.getConfig());
+        assertEquals(expected.getJenkinses(), actual.getJenkinses());
+        assertEquals(definitions(expected), definitions(actual));
+    }
+
+    private Map<String, String> definitions(ConfigRepo.Snapshot snapshot) {
+        Map<String, String> definitions = new HashMap<>();
+        for (NodeDefinition definition : snapshot.getNodes().values()) {
+            definitions.put(definition.getName(), definition.getDefinition());
+        }
+        return definitions;
+    }
+}
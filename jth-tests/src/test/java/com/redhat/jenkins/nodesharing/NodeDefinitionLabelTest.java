@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.redhat.jenkins.nodesharing;
+
+import groovy.util.Node;
+import groovy.util.NodeList;
+import groovy.util.XmlParser;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Labels read by streaming parser are the same the DOM parser used formerly reads.
+ */
+public class NodeDefinitionLabelTest {
+
+    @Test
+    public void sameLabelAsDomParser() throws Exception {
+        String solaris;
+        try (InputStream is = getClass().getResourceAsStream("dummy_config_repo/nodes/solaris1.acme.com.xml")) {
+            solaris = IOUtils.toString(is, StandardCharsets.UTF_8);
+        }
+
+        for (String definition : new String[] { solaris, largeDefinition(500) }) {
+            assertEquals(domLabel(definition), new NodeDefinition.Xml("test.xml", definition).getLabel());
+        }
+    }
+
+    // Definition with many node properties following the label
+    private static String largeDefinition(int properties) {
+        StringBuilder sb = new StringBuilder("<com.redhat.jenkins.nodesharingfrontend.SharedNode>\n")
+                .append("  <name>large.acme.com</name>\n")
+                .append("  <remoteFS>/var/jenkins-workspace</remoteFS>\n")
+                .append("  <numExecutors>1</numExecutors>\n")
+                .append("  <launcher class=\"hudson.slaves.CommandLauncher\">\n")
+                .append("    <agentCommand />\n")
+                .append("  </launcher>\n")
+                .append("  <label>solaris sparc</label>\n")
+                .append("  <nodeProperties>\n")
+                .append("    <hudson.slaves.EnvironmentVariablesNodeProperty>\n")
+                .append("      <envVars serialization=\"custom\">\n")
+                .append("        <unserializable-parents/>\n")
+                .append("        <tree-map>\n")
+                .append("          <default><comparator class=\"hudson.util.CaseInsensitiveComparator\"/></default>\n")
+                .append("          <int>").append(properties).append("</int>\n");
+        for (int i = 0; i < properties; i++) {
+            sb.append("          <string>VARIABLE_").append(i).append("</string><string>value ").append(i).append("</string>\n");
+        }
+        return sb.append("        </tree-map>\n")
+                .append("      </envVars>\n")
+                .append("    </hudson.slaves.EnvironmentVariablesNodeProperty>\n")
+                .append("  </nodeProperties>\n")
+                .append("</com.redhat.jenkins.nodesharingfrontend.SharedNode>\n")
+                .toString();
+    }
+
+    // The way labels ware read before
+    private static String domLabel(String xml) throws Exception {
+        Node node = new XmlParser().parseText(xml);
+        return ((Node) ((NodeList) node.get("label")).get(0)).text().trim();
+    }
+}
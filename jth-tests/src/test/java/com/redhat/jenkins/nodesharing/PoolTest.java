@@ -37,10 +37,12 @@ import com.redhat.jenkins.nodesharingbackend.ShareableNode;
 import com.redhat.jenkins.nodesharingfrontend.SharedNodeCloud;
 import hudson.AbortException;
 import hudson.FilePath;
+import hudson.Util;
 import hudson.model.Computer;
 import hudson.model.Label;
 import hudson.model.Node;
 import hudson.model.Queue;
+import hudson.model.labels.LabelAtom;
 import hudson.model.queue.ScheduleResult;
 import hudson.plugins.git.GitException;
 import hudson.slaves.DumbSlave;
@@ -56,6 +58,7 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import org.mockito.internal.util.reflection.Whitebox;
 
+import javax.annotation.Nonnull;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
@@ -183,6 +186,45 @@ public class PoolTest {
         }
     }
 
+    @Test
+    public void readConfigFromGitObjects() throws Exception {
+        final File workingDir = new File(j.jenkins.getRootDir(), "node-sharing/objects");
+        ConfigRepo repo = new ConfigRepo(Pool.getInstance().getConfigRepoUrl(), workingDir);
+        repo.setReadFromObjects(true);
+
+        ConfigRepo.Snapshot expected = Pool.getInstance().getConfig();
+        ConfigRepo.Snapshot actual = repo.getSnapshot();
+        assertEquals(expected.getSource(), actual.getSource());
+        assertEquals(expected.getConfig(), actual.getConfig());
+        assertEquals(expected.getJenkinses(), actual.getJenkinses());
+        assertEquals(expected.getNodes().keySet(), actual.getNodes().keySet());
+        for (NodeDefinition definition : expected.getNodes().values()) {
+            assertEquals(definition.getDefinition(), actual.getNodes().get(definition.getName()).getDefinition());
+        }
+
+        assertFalse("Nothing is checked out", new File(workingDir, "config").exists());
+    }
+
+    @Test
+    public void restorePersistedSnapshot() throws Exception {
+        File snapshotFile = new File(j.jenkins.getRootDir(), "node-sharing/snapshot.xml");
+        assertTrue("Snapshot persisted after update", snapshotFile.exists());
+
+        String url = Pool.getInstance().getConfigRepoUrl();
+        ConfigRepo.Snapshot expected = Pool.getInstance().getConfig();
+        ConfigRepo.Snapshot actual = new ConfigRepo(url, new File(j.jenkins.getRootDir(), "node-sharing/restored")).restore(snapshotFile);
+        assertNotNull(actual);
+        assertEquals(expected.getSource(), actual.getSource());
+        assertEquals(expected.getConfig(), actual.getConfig());
+        assertEquals(expected.getJenkinses(), actual.getJenkinses());
+        assertEquals(expected.getNodes().keySet(), actual.getNodes().keySet());
+        for (NodeDefinition definition : expected.getNodes().values()) {
+            assertEquals(definition.getDefinition(), actual.getNodes().get(definition.getName()).getDefinition());
+        }
+
+        assertNull("Snapshot of different repo is ignored", new ConfigRepo(url + ".other", new File(j.jenkins.getRootDir(), "node-sharing/other")).restore(snapshotFile));
+    }
+
     @Test
     public void populateComputers() throws Exception {
         assertNull(getConfigTaskException("config-repo"));
@@ -239,6 +281,135 @@ public class PoolTest {
         assertNotNull(j.jenkins.getNode(doNotTouchMe.getNodeName()));
     }
 
+    @Test
+    public void scheduleUpdate() throws Exception {
+        String before = Pool.getInstance().getConfig().getSource();
+
+        GitClient git = j.getConfigRepo();
+        git.getWorkTree().child("fake_change").touch(0);
+        git.add("*");
+        git.commit("Update");
+
+        Updater.getInstance().schedule(); // As if pushed through Api#doRefreshConfig
+        for (int i = 0; i < 100 && before.equals(Pool.getInstance().getConfig().getSource()); i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(git.revParse("HEAD").name(), Pool.getInstance().getConfig().getSource());
+    }
+
+    @Test
+    public void readOnlyChangedFiles() throws Exception {
+        ConfigRepo.Snapshot before = Pool.getInstance().getConfig();
+
+        GitClient git = j.getConfigRepo();
+        FilePath workTree = git.getWorkTree().child("nodes");
+        workTree.child("win2.acme.com.xml").delete();
+        FilePath solarisXml = workTree.child("solaris1.acme.com.xml");
+        solarisXml.write(solarisXml.readToString().replace("solaris11", "solaris12"), Charset.defaultCharset().name());
+        git.add("nodes/*");
+        git.commit("Update");
+        Updater.getInstance().doRun();
+
+        ConfigRepo.Snapshot after = Pool.getInstance().getConfig();
+        ConfigRepo.Snapshot.Diff diff = after.getDiff();
+        assertNotNull(diff);
+        assertEquals(before.getSource(), diff.getBase());
+        assertEquals(Collections.singleton("solaris1.acme.com"), diff.getChangedNodes());
+        assertEquals(Collections.singleton("win2.acme.com"), diff.getRemovedNodes());
+        assertTrue(diff.getAddedNodes().isEmpty());
+
+        assertSame(before.getNodes().get("win1.acme.com"), after.getNodes().get("win1.acme.com"));
+        assertSame(before.getJenkinsByName("jenkins1"), after.getJenkinsByName("jenkins1"));
+        Assert.assertEquals("solaris solaris12 sparc", j.getNode("solaris1.acme.com").getLabelString());
+    }
+
+    @Test
+    public void readShardedNodes() throws Exception {
+        getPoolConfigRepo().setLoadLazily(true);
+        GitClient git = j.getConfigRepo();
+        FilePath nodes = git.getWorkTree().child("nodes");
+        nodes.child("sparc/t5").mkdirs();
+        FilePath solarisXml = nodes.child("solaris1.acme.com.xml");
+        nodes.child("sparc/t5/solaris3.acme.com.xml").write(
+                solarisXml.readToString().replace("solaris1.acme.com", "solaris3.acme.com"), Charset.defaultCharset().name()
+        );
+        solarisXml.renameTo(nodes.child("sparc/solaris1.acme.com.xml"));
+        git.add("nodes/*");
+        git.commit("Shard");
+        Updater.getInstance().doRun();
+
+        ConfigRepo.Snapshot config = Pool.getInstance().getConfig();
+        NodeDefinition solaris1 = config.getNodes().get("solaris1.acme.com");
+        assertEquals("solaris1.acme.com.xml", solaris1.getDeclaringFileName());
+        assertNotNull(config.getBlob(solaris1));
+        assertNotNull(j.getNode("solaris3.acme.com"));
+
+        // Only name and labels are read until needed
+        NodeDefinition solaris3 = config.getNodes().get("solaris3.acme.com");
+        assertFalse(solaris3.isLoaded());
+        assertThat(solaris3.getDefinition(), containsString("<name>solaris3.acme.com</name>"));
+        assertTrue(solaris3.isLoaded());
+
+        nodes.child("win1.acme.com.xml").copyTo(nodes.child("sparc/win1.acme.com.xml"));
+        git.add("nodes/*");
+        git.commit("Duplicate");
+        Updater.getInstance().doRun();
+
+        assertEquals(config.getSource(), Pool.getInstance().getConfig().getSource());
+        TaskLog.TaskFailed ex = (TaskLog.TaskFailed) getConfigTaskException("Primary Config Repo");
+        assertThat(ex.getLog().readContent(), containsString("Node win1.acme.com declared in both"));
+    }
+
+    @Test
+    public void reuseCachedDefinitionOfMovedFile() throws Exception {
+        GitClient git = j.getConfigRepo();
+        NodeDefinition solaris1 = Pool.getInstance().getConfig().getNodes().get("solaris1.acme.com");
+
+        FilePath nodes = git.getWorkTree().child("nodes");
+        nodes.child("sparc").mkdirs();
+        nodes.child("solaris1.acme.com.xml").renameTo(nodes.child("sparc/solaris1.acme.com.xml"));
+        git.add("nodes/*");
+        git.commit("Shard");
+
+        long hits = NodeDefinitionCache.getInstance().getHits();
+        Updater.getInstance().doRun();
+
+        assertSame(solaris1, Pool.getInstance().getConfig().getNodes().get("solaris1.acme.com"));
+        assertTrue(NodeDefinitionCache.getInstance().getHits() > hits);
+    }
+
+    @Test
+    public void readLazyDefinitionAfterRepoClosed() throws Exception {
+        ConfigRepo repo = getPoolConfigRepo();
+        repo.setLoadLazily(true);
+
+        GitClient git = j.getConfigRepo();
+        FilePath nodes = git.getWorkTree().child("nodes");
+        nodes.child("solaris3.acme.com.xml").write(
+                nodes.child("solaris1.acme.com.xml").readToString().replace("solaris1.acme.com", "solaris3.acme.com"),
+                Charset.defaultCharset().name()
+        );
+        git.add("nodes/*");
+        git.commit("Add solaris3");
+        Updater.getInstance().doRun();
+
+        NodeDefinition solaris3 = Pool.getInstance().getConfig().getNodes().get("solaris3.acme.com");
+        assertFalse(solaris3.isLoaded());
+
+        repo.closeObjects();
+        Util.deleteRecursive(repo.getWorkingDir());
+
+        assertThat(solaris3.getDefinition(), containsString("<name>solaris3.acme.com</name>"));
+    }
+
+    private @Nonnull ConfigRepo getPoolConfigRepo() {
+        String url = Pool.getInstance().getConfigRepoUrl();
+        for (ConfigRepo repo : ConfigRepoRegistry.getAll()) {
+            if (repo.getUrl().equals(url)) return repo;
+        }
+        throw new AssertionError("No config repo registered for " + url);
+    }
+
     @Test
     public void workloadMapping() throws Exception {
         MockTask task = new MockTask(j.DUMMY_OWNER, Label.get("solaris11"));
@@ -263,6 +434,21 @@ public class PoolTest {
         assertFalse(startCondition.isDone());
     }
 
+    @Test
+    public void labelIndex() throws Exception {
+        ConfigRepo.Snapshot config = Pool.getInstance().getConfig();
+        assertThat(config.getNodesByLabelAtom(LabelAtom.get("w2k12")), Matchers.hasItem("win1.acme.com"));
+        assertTrue(config.getNodesByLabelAtom(LabelAtom.get("no_such_label")).isEmpty());
+
+        for (int i = 0; i < 2; i++) { // Remembered results are the same
+            assertTrue(config.canProvision(Label.get("w2k12")));
+            assertTrue(config.canProvision(Label.parseExpression("windows && w2k12")));
+            assertFalse(config.canProvision(Label.parseExpression("windows && solaris11")));
+            assertFalse(config.canProvision(Label.get("no_such_label")));
+            assertFalse(config.canProvision(null));
+        }
+    }
+
     @Test
     public void removeNodeFromPool() throws Exception {
         GitClient gitClient = j.singleJvmGrid(j.jenkins);
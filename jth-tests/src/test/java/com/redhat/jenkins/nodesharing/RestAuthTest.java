@@ -95,6 +95,11 @@ public class RestAuthTest {
     }
 
     private void verifyCall(Method method, URL url) throws Exception {
+        if ("doMetrics".equals(method.getName())) {
+            verifyMetricsCall(url);
+            return;
+        }
+
         assertNotNull(method.getName() + " should be annotated with @RequirePOST", method.getAnnotation(RequirePOST.class));
 
         JenkinsRule.WebClient wc = webClient();
@@ -104,6 +109,14 @@ public class RestAuthTest {
         assertThat(webResponse.getContentAsString(), containsString(UNPRIVILIGED_USER + " is missing the NodeSharing/Reserve permission"));
     }
 
+    // Read-only and scraped by GET so not restricted to POST, but available to administrators only
+    private void verifyMetricsCall(URL url) throws Exception {
+        JenkinsRule.WebClient wc = webClient();
+        WebResponse webResponse = wc.login(UNPRIVILIGED_USER, UNPRIVILIGED_USER).getPage(new WebRequest(url, HttpMethod.GET)).getWebResponse();
+        assertEquals(url.toExternalForm(), 403, webResponse.getStatusCode());
+        assertThat(webResponse.getContentAsString(), containsString(UNPRIVILIGED_USER + " is missing the Overall/Administer permission"));
+    }
+
     private JenkinsRule.WebClient webClient() {
         JenkinsRule.WebClient wc = j.createWebClient();
         wc.getOptions().setPrintContentOnFailingStatusCode(false);
@@ -30,24 +30,35 @@ import com.redhat.jenkins.nodesharing.transport.UtilizeNodeRequest;
 import com.redhat.jenkins.nodesharing.transport.UtilizeNodeResponse;
 import com.redhat.jenkins.nodesharing.utils.BlockingBuilder;
 import com.redhat.jenkins.nodesharing.utils.NodeSharingJenkinsRule;
+import com.redhat.jenkins.nodesharing.utils.ResponseCaptor;
 import com.redhat.jenkins.nodesharingbackend.Api;
 import com.redhat.jenkins.nodesharingbackend.Pool;
 import com.redhat.jenkins.nodesharingfrontend.SharedNode;
 import com.redhat.jenkins.nodesharingfrontend.SharedNodeCloud;
 import com.redhat.jenkins.nodesharingfrontend.SharedOnceRetentionStrategy;
+import com.redhat.jenkins.nodesharingfrontend.WorkloadReporter;
 import hudson.FilePath;
 import hudson.model.Computer;
 import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
+import hudson.model.PeriodicWork;
+import hudson.model.Queue;
 import hudson.model.labels.LabelAtom;
 import hudson.model.queue.QueueTaskFuture;
 import hudson.plugins.ws_cleanup.DisableDeferredWipeoutNodeProperty;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
 import hudson.security.AuthorizationStrategy;
 import hudson.security.LegacySecurityRealm;
 import hudson.security.csrf.DefaultCrumbIssuer;
 import hudson.slaves.AbstractCloudComputer;
 import hudson.slaves.OfflineCause;
 import hudson.util.FormValidation;
+import hudson.util.OneShotEvent;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.eclipse.jgit.lib.ObjectId;
 import org.jenkinsci.plugins.gitclient.GitClient;
 import org.junit.Rule;
 import org.junit.Test;
@@ -58,6 +69,8 @@ import javax.annotation.Nonnull;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -74,6 +87,7 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -177,6 +191,49 @@ public class SharedNodeCloudTest {
         cloud.getApi().reportWorkload(workload); // 200 response enforced
     }
 
+    @Test
+    public void reportWorkloadQueuedBehindInFlightOne() throws Exception {
+        final GitClient gitClient = j.singleJvmGrid(j.jenkins);
+        j.addSharedNodeCloud(gitClient.getWorkTree().getRemote());
+        final WorkloadReporter reporter = PeriodicWork.all().get(WorkloadReporter.class);
+
+        // Orchestrator can not complete the report while the queue is locked
+        final OneShotEvent locked = new OneShotEvent();
+        final OneShotEvent unlock = new OneShotEvent();
+        Thread queueLocker = new Thread(new Runnable() {
+            @Override public void run() {
+                Queue.withLock(new Runnable() {
+                    @Override public void run() {
+                        locked.signal();
+                        try {
+                            unlock.block();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+        });
+        queueLocker.start();
+        locked.block();
+
+        try (ACLContext ignored = ACL.as(ACL.SYSTEM)) {
+            reporter.doRun(); // In flight
+            reporter.doRun(); // Waiting for the first one
+        }
+
+        unlock.signal();
+        queueLocker.join();
+
+        // Next report is sent only after the queued one completes
+        Future<?> update = Computer.threadPoolForRemoting.submit(new Runnable() {
+            @Override public void run() {
+                j.reportWorkloadToOrchestrator();
+            }
+        });
+        update.get(30, TimeUnit.SECONDS);
+    }
+
     @Test
     public void configRoundtrip() throws Exception {
         final GitClient gitClient = j.singleJvmGrid(j.jenkins);
@@ -521,6 +578,61 @@ public class SharedNodeCloudTest {
         assertFalse(job.isBuilding());
     }
 
+    @Test
+    public void testDoUtilizeNodeByReference() throws Exception {
+        final GitClient gitClient = j.singleJvmGrid(j.jenkins);
+        SharedNodeCloud cloud = j.addSharedNodeCloud(gitClient.getWorkTree().getRemote());
+
+        ConfigRepo.Snapshot config = Pool.getInstance().getConfig();
+        NodeDefinition definition = config.getNodes().get("solaris1.acme.com");
+        ObjectId blob = config.getBlob(definition);
+        assertNotNull(blob);
+
+        RestEndpoint rest = new RestEndpoint(j.getURL().toExternalForm(), "cloud/" + cloud.name + "/api", j.getRestCredential());
+        try { // Resolved, but there is no workload for it
+            rest.executeRequest(rest.post("utilizeNode"), new UtilizeNodeRequest(
+                    Pool.getInstance().getConfigRepoUrl(), "4.2", definition, config.getSource(), blob.name()
+            ), UtilizeNodeResponse.class);
+            fail();
+        } catch (ActionFailed.RequestFailed e) {
+            assertEquals(410, e.getStatusCode());
+        }
+
+        try { // No such content in config repo
+            rest.executeRequest(rest.post("utilizeNode"), new UtilizeNodeRequest(
+                    Pool.getInstance().getConfigRepoUrl(), "4.2", definition, config.getSource(), ObjectId.zeroId().name()
+            ), UtilizeNodeResponse.class);
+            fail();
+        } catch (ActionFailed.RequestFailed e) {
+            assertEquals(412, e.getStatusCode());
+        }
+
+        try { // Unknown revision, refreshed in background not to keep orchestrator waiting
+            rest.executeRequest(rest.post("utilizeNode"), new UtilizeNodeRequest(
+                    Pool.getInstance().getConfigRepoUrl(), "4.2", definition, ObjectId.zeroId().name(), ObjectId.zeroId().name()
+            ), UtilizeNodeResponse.class);
+            fail();
+        } catch (ActionFailed.RequestFailed e) {
+            assertEquals(412, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void refreshConfigWithoutEntity() throws Exception {
+        final GitClient gitClient = j.singleJvmGrid(j.jenkins);
+        SharedNodeCloud cloud = j.addSharedNodeCloud(gitClient.getWorkTree().getRemote());
+        RestEndpoint rest = new RestEndpoint(j.getURL().toExternalForm(), "cloud/" + cloud.name + "/api", j.getRestCredential());
+
+        ResponseCaptor.Capture empty = rest.executeRequest(rest.post("refreshConfig"), new ResponseCaptor());
+        assertEquals(empty.payload, 200, empty.statusLine.getStatusCode());
+
+        // Payload of the push hook itself
+        HttpPost push = rest.post("refreshConfig");
+        push.setEntity(new StringEntity("{\"ref\":\"refs/heads/master\"}", ContentType.APPLICATION_JSON));
+        ResponseCaptor.Capture hook = rest.executeRequest(push, new ResponseCaptor());
+        assertEquals(hook.payload, 200, hook.statusLine.getStatusCode());
+    }
+
     @Test
     public void testTemporaryOffline() throws Exception {
         final GitClient gitClient = j.singleJvmGrid(j.jenkins);
@@ -49,6 +49,17 @@ public abstract class ActionFailed extends RuntimeException {
         }
     }
 
+    /**
+     * The request was not sent as the other side have not responded repeatedly.
+     *
+     * @see CircuitBreaker
+     */
+    public static class CircuitOpen extends CommunicationError {
+        public CircuitOpen(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
     /**
      * The request has failed by reporting non-success status code.
      */
@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.redhat.jenkins.nodesharing;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import java.util.Date;
+import java.util.logging.Logger;
+
+/**
+ * Stop waiting for Jenkins instance that does not respond.
+ *
+ * Circuit opens after {@link #FAILURE_THRESHOLD} consecutive communication failures so further requests fail fast instead
+ * of waiting for the timeout. When the backoff elapses, single request is let through to probe the other side (half-open
+ * state). The circuit closes in case it succeeds, or opens again with backoff doubled in case it fails.
+ *
+ * @see RestEndpoint#getCircuitBreakers()
+ */
+public final class CircuitBreaker {
+    private static final Logger LOGGER = Logger.getLogger(CircuitBreaker.class.getName());
+
+    // Consecutive failures to open the circuit after
+    private static final int FAILURE_THRESHOLD = Integer.getInteger(
+            "com.redhat.jenkins.nodesharing.CircuitBreaker.FAILURE_THRESHOLD", 5
+    );
+    // Time in ms the circuit stays open before first probe
+    private static final long INITIAL_BACKOFF = Long.getLong(
+            "com.redhat.jenkins.nodesharing.CircuitBreaker.INITIAL_BACKOFF", 10 * 1000
+    );
+    // Upper bound of the time in ms the circuit stays open before probe
+    private static final long MAX_BACKOFF = Long.getLong(
+            "com.redhat.jenkins.nodesharing.CircuitBreaker.MAX_BACKOFF", 10 * 60 * 1000
+    );
+
+    public enum State {
+        /** Requests pass. */
+        CLOSED,
+        /** Requests fail fast. */
+        OPEN,
+        /** Single probe request is in progress, others fail fast. */
+        HALF_OPEN
+    }
+
+    private final @Nonnull String url;
+
+    @GuardedBy("this")
+    private @Nonnull State state = State.CLOSED;
+    @GuardedBy("this")
+    private int consecutiveFailures = 0;
+    @GuardedBy("this")
+    private long backoff = INITIAL_BACKOFF;
+    @GuardedBy("this")
+    private long openedAt;
+    @GuardedBy("this")
+    private @CheckForNull Throwable lastFailure;
+
+    /*package*/ CircuitBreaker(@Nonnull String url) {
+        this.url = url;
+    }
+
+    /**
+     * Permit request to be sent.
+     *
+     * @return true if the request is a probe of a half-open circuit.
+     * @throws ActionFailed.CircuitOpen if the request should not be sent.
+     */
+    /*package*/ synchronized boolean acquire() throws ActionFailed.CircuitOpen {
+        if (state == State.CLOSED) return false;
+
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= backoff) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+
+        String retry = state == State.OPEN ? "after " + getRetryAfter() : "once the probe request completes";
+        throw new ActionFailed.CircuitOpen(
+                "Circuit to " + url + " is open after " + consecutiveFailures + " failures, retrying " + retry, lastFailure
+        );
+    }
+
+    /**
+     * The other side responded.
+     */
+    /*package*/ synchronized void succeeded() {
+        if (state != State.CLOSED) {
+            LOGGER.info("Circuit to " + url + " closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        backoff = INITIAL_BACKOFF;
+        lastFailure = null;
+    }
+
+    /**
+     * The other side have not responded.
+     *
+     * @param probe The value {@link #acquire()} returned for the request.
+     */
+    /*package*/ synchronized void failed(boolean probe, @Nonnull Throwable cause) {
+        consecutiveFailures++;
+        lastFailure = cause;
+        if (probe) {
+            backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            open();
+        } else if (state == State.CLOSED && consecutiveFailures >= FAILURE_THRESHOLD) {
+            open();
+        }
+    }
+
+    @GuardedBy("this")
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        LOGGER.warning("Circuit to " + url + " opened after " + consecutiveFailures + " failures, retrying after " + getRetryAfter());
+    }
+
+    public @Nonnull String getUrl() {
+        return url;
+    }
+
+    public synchronized @Nonnull State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * @return Time the probe request will be permitted, null if the circuit is not open.
+     */
+    public synchronized @CheckForNull Date getRetryAfter() {
+        if (state != State.OPEN) return null;
+        return new Date(openedAt + backoff);
+    }
+
+    public synchronized @CheckForNull Throwable getLastFailure() {
+        return lastFailure;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CircuitBreaker{" + url + ": " + state + ", failures=" + consecutiveFailures + "}";
+    }
+}
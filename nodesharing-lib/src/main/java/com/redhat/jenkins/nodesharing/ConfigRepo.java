@@ -23,10 +23,24 @@
  */
 package com.redhat.jenkins.nodesharing;
 
+import com.google.common.annotations.VisibleForTesting;
 import hudson.EnvVars;
 import hudson.FilePath;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.Label;
+import hudson.model.labels.LabelAtom;
 import hudson.plugins.git.GitException;
+import hudson.plugins.git.IndexEntry;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.XStream2;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.URIish;
 import org.jenkinsci.plugins.gitclient.Git;
 import org.jenkinsci.plugins.gitclient.GitClient;
 
@@ -40,15 +54,29 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Properties;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -63,21 +91,158 @@ public class ConfigRepo {
     private static final String KEY_JENKINS_URL = "url";
     private static final String KEY_ENFORCE_HTTPS = "enforce_https";
 
+    private static final String FETCHED_HEAD = "origin/master";
+    private static final RefSpec MASTER_REFSPEC = new RefSpec("+refs/heads/master:refs/remotes/" + FETCHED_HEAD);
+
     private static final Logger LOGGER = Logger.getLogger(ConfigRepo.class.getName());
 
+    /**
+     * Git implementation to use by default, "git" for command line git or "jgit" to operate in-process.
+     */
+    public static final String GIT_IMPLEMENTATION = System.getProperty(
+            "com.redhat.jenkins.nodesharing.ConfigRepo.GIT_IMPLEMENTATION", "git"
+    );
+
+    /**
+     * Read snapshots from git objects directly instead of checking out the working tree.
+     */
+    public static final boolean READ_FROM_OBJECTS = Boolean.getBoolean(
+            "com.redhat.jenkins.nodesharing.ConfigRepo.READ_FROM_OBJECTS"
+    );
+
+    private static final XStream2 XSTREAM = new XStream2();
+    static {
+        XSTREAM.alias("snapshot", StoredSnapshot.class);
+    }
+
+    // Maximal number of node definitions parsed in parallel
+    private static final int PARSER_THREADS = Math.max(1, Integer.getInteger(
+            "com.redhat.jenkins.nodesharing.ConfigRepo.PARSER_THREADS", Runtime.getRuntime().availableProcessors()
+    ));
+    private static final ExecutorService PARSER;
+    static {
+        ThreadPoolExecutor parser = new ThreadPoolExecutor(
+                PARSER_THREADS, PARSER_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "ConfigRepo node parser")
+        );
+        parser.allowCoreThreadTimeOut(true);
+        PARSER = parser;
+    }
+
+    private static final NodeDefinitionCache DEFINITIONS = NodeDefinitionCache.getInstance();
+
+    // Keep only names and labels of nodes until their definitions are needed, opt-in
+    private static final boolean LAZY_DEFINITIONS = Boolean.getBoolean(
+            "com.redhat.jenkins.nodesharing.ConfigRepo.LAZY_DEFINITIONS"
+    );
+
     // Ensure content of repository is no manipulated while being read
     private final @Nonnull Object repoLock = new Object();
 
     private final @Nonnull String url;
     private final @Nonnull File workingDir;
+    private final @Nonnull String gitImplementation;
+    private boolean readFromObjects = READ_FROM_OBJECTS;
+    private boolean loadLazily = LAZY_DEFINITIONS;
     private @CheckForNull GitClient client;
 
+    // Object database lazily loaded definitions are read from, not to block on repoLock
+    private final Object objectsLock = new Object();
+    @GuardedBy("objectsLock")
+    private @CheckForNull Repository objects;
+    // Definitions created with content not read yet, referenced weakly not to keep those no longer used around
+    private final @Nonnull Set<NodeDefinition> lazyDefinitions = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<NodeDefinition, Boolean>())
+    );
+
     @GuardedBy("repoLock")
     private @CheckForNull Snapshot snapshot;
 
+    // Referenced weakly not to prevent listening objects from being collected
+    private final @Nonnull Set<Listener> listeners = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<Listener, Boolean>())
+    );
+
     public ConfigRepo(@Nonnull String url, @Nonnull File workingDir) {
+        this(url, workingDir, GIT_IMPLEMENTATION);
+    }
+
+    /**
+     * @param gitImplementation Git client implementation name as understood by {@link Git#using(String)}.
+     */
+    public ConfigRepo(@Nonnull String url, @Nonnull File workingDir, @Nonnull String gitImplementation) {
         this.url = url;
         this.workingDir = workingDir;
+        this.gitImplementation = gitImplementation;
+    }
+
+    public @Nonnull String getUrl() {
+        return url;
+    }
+
+    /*package*/ @Nonnull File getWorkingDir() {
+        return workingDir;
+    }
+
+    /**
+     * Register listener to be notified about snapshots of new revisions.
+     *
+     * The listener is referenced weakly so the caller is responsible to keep it reachable for as long as it is interested.
+     */
+    public void addListener(@Nonnull Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@Nonnull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Persist the snapshot so it can be {@link #restore(File) restored} without reaching the repository.
+     */
+    public void save(@Nonnull Snapshot snapshot, @Nonnull File file) throws IOException {
+        new XmlFile(XSTREAM, file).write(new StoredSnapshot(url, snapshot));
+    }
+
+    /**
+     * Start with persisted snapshot until the repository is read.
+     *
+     * @return Restored snapshot, the current one in case there is some already, or null if there is nothing to restore.
+     * @see #save(Snapshot, File)
+     */
+    public @CheckForNull Snapshot restore(@Nonnull File file) {
+        synchronized (repoLock) {
+            if (snapshot != null) return snapshot;
+
+            XmlFile xml = new XmlFile(XSTREAM, file);
+            if (!xml.exists()) return null;
+
+            try {
+                StoredSnapshot stored = (StoredSnapshot) xml.read();
+                if (!url.equals(stored.url)) {
+                    LOGGER.info("Not restoring snapshot of " + stored.url + " for " + url);
+                    return null;
+                }
+                snapshot = stored.toSnapshot();
+                LOGGER.info("Restored snapshot " + snapshot.getSource() + " of " + url);
+                return snapshot;
+            } catch (IOException|RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Unable to restore snapshot from " + file, ex);
+                return null;
+            }
+        }
+    }
+
+    /*package*/ void setReadFromObjects(boolean readFromObjects) {
+        synchronized (repoLock) {
+            this.readFromObjects = readFromObjects;
+        }
+    }
+
+    /*package*/ void setLoadLazily(boolean loadLazily) {
+        synchronized (repoLock) {
+            this.loadLazily = loadLazily;
+        }
     }
 
     /**
@@ -91,8 +256,11 @@ public class ConfigRepo {
     public @Nonnull Snapshot getSnapshot() throws InterruptedException, IOException, TaskLog.TaskFailed {
         Files.createDirectories(workingDir.toPath());
         TaskLog taskLog = new TaskLog(new File(workingDir.getAbsolutePath() + ".log"));
+        Snapshot before = null;
+        Snapshot after = null;
         try {
             synchronized (repoLock) {
+                before = snapshot;
                 ObjectId currentHead = null;
                 try {
                     currentHead = getRemoteHead(taskLog);
@@ -119,10 +287,11 @@ public class ConfigRepo {
                 } else {
                     taskLog.getLogger().printf("Node sharing config changes discovered %s%nPulling %s to %s%n", currentHead.name(), url, workingDir);
                     fetchChanges(taskLog);
-                    ObjectId checkedOutHead = getClient(taskLog).revParse("HEAD");
-                    assert currentHead.equals(checkedOutHead) : "What was discovered was in fact checked out";
+                    ObjectId fetchedHead = getClient(taskLog).revParse(FETCHED_HEAD);
+                    assert currentHead.equals(fetchedHead) : "What was discovered was in fact fetched";
                     snapshot = readConfig(currentHead, taskLog);
                 }
+                after = snapshot;
             }
         } catch (IOException|GitException ex) {
             taskLog.error(ex, "Unable to update config repo from %s", url);
@@ -131,18 +300,79 @@ public class ConfigRepo {
         }
 
         taskLog.throwIfFailed("Unable to read snapshot from " + url);
-        assert snapshot != null;
-        return snapshot;
+        assert after != null;
+        if (before == null || !before.source.equals(after.source)) {
+            // Notified outside of the repo lock so listeners can not deadlock with other readers
+            fireChanged(after);
+        }
+        return after;
+    }
+
+    private void fireChanged(@Nonnull Snapshot snapshot) {
+        List<Listener> ls;
+        synchronized (listeners) {
+            ls = new ArrayList<>(listeners);
+        }
+        for (Listener l : ls) {
+            try {
+                l.onChange(snapshot);
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Config repo listener " + l + " failed", ex);
+            }
+        }
     }
 
     /* package */ @Nonnull ObjectId getRemoteHead(@Nonnull TaskLog taskLog) throws InterruptedException, GitException {
         return getClient(taskLog).getHeadRev(url, "master");
     }
 
-    private void fetchChanges(@Nonnull TaskLog taskLog) throws InterruptedException, GitException {
+    /**
+     * Fetch master branch into existing repository, clone it in case there is none or it is corrupted.
+     */
+    private void fetchChanges(@Nonnull TaskLog taskLog) throws InterruptedException, GitException, IOException {
         synchronized (repoLock) {
-            getClient(taskLog).clone_().url(url).execute();
-            getClient(taskLog).checkout().branch("master").ref("origin/master").execute();
+            GitClient client = getClient(taskLog);
+            if (!client.hasGitRepo()) {
+                client.clone_().url(url).execute();
+            } else {
+                try {
+                    client.fetch_()
+                            .from(getRemoteUri(), Collections.singletonList(MASTER_REFSPEC))
+                            .shallow(true).depth(1)
+                            .execute()
+                    ;
+                } catch (GitException ex) {
+                    if (isLocalRepoUsable(client)) throw ex; // Remote problem, keep the local copy for recovery
+
+                    taskLog.println("Local config repo copy is corrupted, cloning again: " + ex.getMessage());
+                    closeObjects();
+                    Util.deleteContentsRecursive(workingDir);
+                    this.client = null;
+                    client = getClient(taskLog);
+                    client.clone_().url(url).execute();
+                }
+            }
+            if (!readFromObjects) {
+                // Forced checkout resets the working tree to fetched revision
+                client.checkout().branch("master").ref(FETCHED_HEAD).execute();
+            }
+        }
+    }
+
+    private @Nonnull URIish getRemoteUri() throws GitException {
+        try {
+            return new URIish(url);
+        } catch (URISyntaxException e) {
+            throw new GitException("Invalid config repo url " + url, e);
+        }
+    }
+
+    private boolean isLocalRepoUsable(@Nonnull GitClient client) throws InterruptedException {
+        try {
+            client.revParse(FETCHED_HEAD);
+            return true;
+        } catch (GitException e) {
+            return false;
         }
     }
 
@@ -151,7 +381,7 @@ public class ConfigRepo {
         try {
             return client = Git.with(taskLog, new EnvVars())
                     .in(workingDir)
-                    .using("git")
+                    .using(gitImplementation)
                     .getClient()
             ;
         } catch (IOException e) {
@@ -159,62 +389,146 @@ public class ConfigRepo {
         }
     }
 
+    /**
+     * Read snapshot of the revision, either checked out or from git objects.
+     *
+     * Node and Jenkins definitions with the same blob id as in the current snapshot are carried over without being read.
+     */
     private @Nonnull Snapshot readConfig(
             @Nonnull ObjectId head, @Nonnull TaskLog taskLog
     ) throws IOException, InterruptedException, TaskLog.TaskFailed {
         synchronized (repoLock) {
-            HashMap<String, String> config = null;
-            Set<ExecutorJenkins> jenkinses = null;
-            Map<String, NodeDefinition> hosts = null;
-
-            String orchestratorUrl;
-            FilePath configFile = new FilePath(workingDir).child("config");
-            if (!configFile.exists()) {
-                taskLog.error("No file named 'config' found in Config Repository");
-            } else {
-                config = getProperties(configFile);
-                orchestratorUrl = config.get(KEY_CONFIG_ORCHESTRATOR_URL);
-                if (orchestratorUrl == null) {
-                    taskLog.error("No " + KEY_CONFIG_ORCHESTRATOR_URL + " specified by Config Repository");
-                } else {
-                    if(!orchestratorUrl.endsWith("/")) orchestratorUrl += "/";
-                    try {
-                        URL url = new URL(orchestratorUrl);
-                        if (!isSafeUrl(url, config)) {
-                            taskLog.error("Orchestrator is using %s protocol, https required", url.getProtocol());
-                        }
-                    } catch (MalformedURLException e) {
-                        taskLog.error(e, "%s is not valid orchestrator url", orchestratorUrl);
-                    }
-                }
+            try (ConfigTree tree = getTree(head, taskLog)) {
+                return readConfig(head, tree, taskLog);
             }
+        }
+    }
 
-            FilePath jenkinsesDir = new FilePath(workingDir).child("jenkinses");
-            if (!jenkinsesDir.isDirectory()) {
-                taskLog.error("No directory named 'jenkinses' found in Config Repository");
-            } else {
-                jenkinses = getJenkinses(jenkinsesDir, taskLog);
+    private @Nonnull ConfigTree getTree(@Nonnull ObjectId head, @Nonnull TaskLog taskLog) throws IOException, InterruptedException {
+        if (readFromObjects) {
+            Repository repo = getClient(taskLog).getRepository();
+            try {
+                return new ConfigTree.GitTree(repo, head);
+            } catch (IOException|RuntimeException ex) {
+                repo.close();
+                throw ex;
             }
+        }
+        return new ConfigTree.WorkingTree(new FilePath(workingDir), listBlobs(head, taskLog));
+    }
+
+    @GuardedBy("repoLock")
+    private @Nonnull Snapshot readConfig(
+            @Nonnull ObjectId head, @Nonnull ConfigTree tree, @Nonnull TaskLog taskLog
+    ) throws IOException, InterruptedException, TaskLog.TaskFailed {
+        Snapshot previous = snapshot;
+        Map<String, ObjectId> blobs = tree.getBlobs();
+
+        HashMap<String, String> config = null;
+        Set<ExecutorJenkins> jenkinses = null;
+        Map<String, NodeDefinition> hosts = null;
+        Map<String, String> nodePaths = new HashMap<>();
 
-            FilePath nodesDir = new FilePath(workingDir).child("nodes");
-            if (!jenkinsesDir.exists()) {
-                taskLog.error("No directory named 'nodes' found in Config Repository");
+        String orchestratorUrl;
+        if (!tree.isFile("config")) {
+            taskLog.error("No file named 'config' found in Config Repository");
+        } else {
+            config = getProperties(tree, "config");
+            orchestratorUrl = config.get(KEY_CONFIG_ORCHESTRATOR_URL);
+            if (orchestratorUrl == null) {
+                taskLog.error("No " + KEY_CONFIG_ORCHESTRATOR_URL + " specified by Config Repository");
             } else {
-                hosts = readNodes(nodesDir, taskLog);
+                if(!orchestratorUrl.endsWith("/")) orchestratorUrl += "/";
+                try {
+                    URL url = new URL(orchestratorUrl);
+                    if (!isSafeUrl(url, config)) {
+                        taskLog.error("Orchestrator is using %s protocol, https required", url.getProtocol());
+                    }
+                } catch (MalformedURLException e) {
+                    taskLog.error(e, "%s is not valid orchestrator url", orchestratorUrl);
+                }
             }
+        }
 
-            taskLog.throwIfFailed("Unable to read config repository");
-            if (config == null || jenkinses == null || hosts == null) throw new AssertionError();
-            return new Snapshot(head, config, jenkinses, hosts);
+        if (!tree.isDirectory("jenkinses")) {
+            taskLog.error("No directory named 'jenkinses' found in Config Repository");
+        } else {
+            jenkinses = getJenkinses(tree, previous, blobs, taskLog);
         }
+
+        if (!tree.isDirectory("nodes")) {
+            taskLog.error("No directory named 'nodes' found in Config Repository");
+        } else {
+            hosts = readNodes(tree, previous, blobs, nodePaths, taskLog);
+        }
+
+        taskLog.throwIfFailed("Unable to read config repository");
+        if (config == null || jenkinses == null || hosts == null) throw new AssertionError();
+        Snapshot.Diff diff = previous == null ? null : new Snapshot.Diff(previous, hosts, nodePaths, blobs);
+        return new Snapshot(head, config, jenkinses, hosts, Collections.unmodifiableMap(nodePaths), blobs, diff);
     }
 
-    private @Nonnull Set<ExecutorJenkins> getJenkinses(FilePath jenkinsesDir, TaskLog taskLog) throws IOException, InterruptedException {
+    /**
+     * List ids of all files in revision.
+     *
+     * @return Blob ids keyed by repository path. Empty in case they can not be determined.
+     */
+    private @Nonnull Map<String, ObjectId> listBlobs(@Nonnull ObjectId head, @Nonnull TaskLog taskLog) throws InterruptedException {
+        Map<String, ObjectId> blobs = new HashMap<>();
+        try {
+            List<IndexEntry> entries = getClient(taskLog).lsTree(head.name(), true);
+            for (IndexEntry entry : entries) {
+                if ("blob".equals(entry.getType())) {
+                    blobs.put(entry.getFile(), ObjectId.fromString(entry.getObject()));
+                }
+            }
+        } catch (GitException e) {
+            // Not fatal, all the files will be read
+            taskLog.println("Unable to list blobs of " + head.name() + ": " + e.getMessage());
+            blobs.clear();
+        }
+        return Collections.unmodifiableMap(blobs);
+    }
+
+    // The file is known to be the same as when previous snapshot was read
+    private static boolean isUnchanged(
+            @CheckForNull Snapshot previous, @Nonnull Map<String, ObjectId> blobs, @Nonnull String path
+    ) {
+        if (previous == null) return false;
+        ObjectId blob = blobs.get(path);
+        return blob != null && blob.equals(previous.blobs.get(path));
+    }
+
+    // Compare by blob ids when both are known so lazily loaded definitions are not read just to be compared
+    private static boolean isSameDefinition(
+            @Nonnull NodeDefinition a, @CheckForNull ObjectId aBlob, @Nonnull NodeDefinition b, @CheckForNull ObjectId bBlob
+    ) {
+        if (a == b) return true;
+        if (aBlob != null && bBlob != null) return aBlob.equals(bBlob);
+        return a.readDefinition().equals(b.readDefinition());
+    }
+
+    private @Nonnull Set<ExecutorJenkins> getJenkinses(
+            ConfigTree tree, @CheckForNull Snapshot previous, Map<String, ObjectId> blobs, TaskLog taskLog
+    ) throws IOException, InterruptedException {
+        Map<String, ExecutorJenkins> previousJenkinses = new HashMap<>();
+        if (previous != null) {
+            for (ExecutorJenkins jenkins : previous.getJenkinses()) {
+                previousJenkinses.put(jenkins.getName(), jenkins);
+            }
+        }
+
         HashSet<ExecutorJenkins> jenkinses = new LinkedHashSet<>();
-        for (FilePath jenkinsfile: jenkinsesDir.list()) {
-            HashMap<String, String> config = getProperties(jenkinsfile);
+        for (String name : tree.list("jenkinses")) {
+            String path = "jenkinses/" + name;
+            ExecutorJenkins unchanged = previousJenkinses.get(name);
+            if (unchanged != null && isUnchanged(previous, blobs, path)) {
+                jenkinses.add(unchanged);
+                continue;
+            }
+
+            HashMap<String, String> config = getProperties(tree, path);
 
-            String name = jenkinsfile.getName();
             String url = config.get(KEY_JENKINS_URL);
             if (url == null) {
                 taskLog.error("Jenkins config file " + name + " has no url property");
@@ -243,9 +557,9 @@ public class ConfigRepo {
         return "https".equals(u.getProtocol());
     }
 
-    private @Nonnull HashMap<String, String> getProperties(FilePath configFile) throws IOException, InterruptedException {
+    private @Nonnull HashMap<String, String> getProperties(ConfigTree tree, String path) throws IOException, InterruptedException {
         Properties config = new Properties();
-        try (InputStream is = configFile.read()) {
+        try (InputStream is = tree.read(path)) {
             config.load(is);
         }
 
@@ -264,23 +578,252 @@ public class ConfigRepo {
         return c;
     }
 
-    private @Nonnull Map<String, NodeDefinition> readNodes(FilePath nodesDir, TaskLog taskLog) throws IOException, InterruptedException {
-        Map<String, NodeDefinition> nodes = new HashMap<>();
-        for (FilePath entry : nodesDir.list()) {
-            if (entry.isDirectory()) {
-                taskLog.println("No directories expected in nodes dir " + entry);
+    /**
+     * Read node definitions from nodes directory and its subdirectories.
+     *
+     * The definitions are loaded lazily in case their blob ids are known and it is enabled by {@link #LAZY_DEFINITIONS}.
+     * Either way, they are cached by the blob ids so the content seen before is not parsed again.
+     *
+     * @param paths Populated with repository paths by declaring file names.
+     */
+    private @Nonnull Map<String, NodeDefinition> readNodes(
+            final ConfigTree tree, @CheckForNull Snapshot previous, Map<String, ObjectId> blobs,
+            Map<String, String> paths, TaskLog taskLog
+    ) throws IOException, InterruptedException {
+        Map<String, NodeDefinition> previousNodes = new HashMap<>();
+        if (previous != null) {
+            for (NodeDefinition node : previous.getNodes().values()) {
+                previousNodes.put(node.getDeclaringFileName(), node);
             }
+        }
 
-            NodeDefinition nd = NodeDefinition.create(entry);
-            if (nd == null) {
-                taskLog.error("Unknown node definition in " + entry.getBaseName());
-            } else {
+        // Sorted so problems are reported in stable order
+        List<String> entries = new ArrayList<>();
+        listNodeFiles(tree, "nodes", entries);
+
+        final boolean loadLazily = this.loadLazily;
+        // Parse in parallel, collect in order
+        List<Future<NodeDefinition>> parsed = new ArrayList<>(entries.size());
+        for (final String path : entries) {
+            final String fileName = path.substring(path.lastIndexOf('/') + 1);
+            NodeDefinition unchanged = previousNodes.get(fileName);
+            if (unchanged != null && isUnchanged(previous, blobs, path)) {
+                parsed.add(CompletableFuture.completedFuture(unchanged));
+                continue;
+            }
+
+            final ObjectId blob = blobs.get(path);
+            NodeDefinition cached = blob == null ? null : DEFINITIONS.get(fileName, blob);
+            if (cached != null) {
+                parsed.add(CompletableFuture.completedFuture(cached));
+                continue;
+            }
+
+            parsed.add(PARSER.submit(new Callable<NodeDefinition>() {
+                @Override public NodeDefinition call() throws Exception {
+                    String content = tree.readToString(path);
+                    if (blob == null) return DEFINITIONS.create(fileName, content);
+
+                    NodeDefinition definition = loadLazily
+                            ? NodeDefinition.create(fileName, content, new BlobSource(blob))
+                            : NodeDefinition.create(fileName, content)
+                    ;
+                    if (definition != null) {
+                        if (!definition.isLoaded()) {
+                            lazyDefinitions.add(definition);
+                        }
+                        DEFINITIONS.put(blob, definition);
+                    }
+                    return definition;
+                }
+            }));
+        }
+
+        Map<String, NodeDefinition> nodes = new HashMap<>();
+        try {
+            for (int i = 0; i < entries.size(); i++) {
+                String path = entries.get(i);
+                NodeDefinition nd;
+                try {
+                    nd = parsed.get(i).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    if (cause instanceof InterruptedException) throw (InterruptedException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    taskLog.error(cause, "Unable to read node definition %s", path);
+                    continue;
+                }
+
+                if (nd == null) {
+                    taskLog.error("Unknown node definition in " + path);
+                    continue;
+                }
+
+                String declared = paths.get(nd.getDeclaringFileName());
+                if (declared != null) {
+                    taskLog.error("Node %s declared in both %s and %s", nd.getName(), declared, path);
+                    continue;
+                }
+                paths.put(nd.getDeclaringFileName(), path);
                 nodes.put(nd.getName(), nd);
             }
+        } finally {
+            // Do not waste time on the rest in case of failure
+            for (Future<NodeDefinition> future : parsed) {
+                future.cancel(true);
+            }
         }
         return nodes;
     }
 
+    // Files in the directory and its subdirectories, subdirectories shard large pools by site, label family, etc.
+    private static void listNodeFiles(
+            @Nonnull ConfigTree tree, @Nonnull String dir, @Nonnull List<String> paths
+    ) throws IOException, InterruptedException {
+        for (String name : tree.list(dir)) {
+            String path = dir + "/" + name;
+            if (tree.isDirectory(path)) {
+                listNodeFiles(tree, path, paths);
+            } else {
+                paths.add(path);
+            }
+        }
+    }
+
+    /**
+     * Read blob from local repository object database.
+     */
+    /*package*/ @Nonnull String readBlob(@Nonnull ObjectId blob) throws IOException {
+        Repository repo;
+        synchronized (objectsLock) {
+            if (objects == null) {
+                objects = new FileRepositoryBuilder()
+                        .setGitDir(new File(workingDir, Constants.DOT_GIT))
+                        .setMustExist(true)
+                        .build()
+                ;
+            }
+            repo = objects;
+        }
+        return new String(repo.open(blob, Constants.OBJ_BLOB).getBytes(), StandardCharsets.UTF_8);
+    }
+
+    // Stop using the object database, the repository is going to be replaced or removed
+    /*package*/ void closeObjects() {
+        // Definitions still in use would not be able to read the content once the object database is gone
+        List<NodeDefinition> lazy;
+        synchronized (lazyDefinitions) {
+            lazy = new ArrayList<>(lazyDefinitions);
+            lazyDefinitions.clear();
+        }
+        for (NodeDefinition definition : lazy) {
+            try {
+                definition.getDefinition();
+            } catch (IllegalStateException ex) {
+                LOGGER.log(Level.WARNING, "Unable to load definition " + definition.getDeclaringFileName() + " from " + url, ex);
+            }
+        }
+
+        synchronized (objectsLock) {
+            if (objects != null) {
+                objects.close();
+                objects = null;
+            }
+        }
+    }
+
+    @VisibleForTesting
+    /*package*/ boolean isObjectsOpen() {
+        synchronized (objectsLock) {
+            return objects != null;
+        }
+    }
+
+    // Definition content read from the object database on demand
+    private final class BlobSource implements NodeDefinition.Source {
+        private final @Nonnull ObjectId blob;
+
+        private BlobSource(@Nonnull ObjectId blob) {
+            this.blob = blob.copy();
+        }
+
+        @Override public @Nonnull String read() throws IOException {
+            return readBlob(blob);
+        }
+    }
+
+    // Persistent form of the snapshot
+    private static final class StoredSnapshot {
+        private final @Nonnull String url;
+        private final @Nonnull String source;
+        private final @Nonnull HashMap<String, String> config;
+        // Urls by name
+        private final @Nonnull HashMap<String, String> jenkinses = new HashMap<>();
+        // Definitions by declaring file name
+        private final @Nonnull HashMap<String, String> nodes = new HashMap<>();
+        // Paths by declaring file name, null when stored before nodes could be in subdirectories
+        private @CheckForNull HashMap<String, String> paths;
+        // Blob ids by path
+        private final @Nonnull HashMap<String, String> blobs = new HashMap<>();
+
+        private StoredSnapshot(@Nonnull String url, @Nonnull Snapshot snapshot) {
+            this.url = url;
+            this.source = snapshot.getSource();
+            this.config = snapshot.getConfig();
+            for (ExecutorJenkins jenkins : snapshot.getJenkinses()) {
+                jenkinses.put(jenkins.getName(), jenkins.getUrl().toExternalForm());
+            }
+            for (NodeDefinition node : snapshot.getNodes().values()) {
+                // Do not keep lazily loaded definitions in memory after saving
+                nodes.put(node.getDeclaringFileName(), node.readDefinition());
+            }
+            this.paths = new HashMap<>(snapshot.nodePaths);
+            for (Map.Entry<String, ObjectId> blob : snapshot.blobs.entrySet()) {
+                blobs.put(blob.getKey(), blob.getValue().name());
+            }
+        }
+
+        private @Nonnull Snapshot toSnapshot() {
+            Set<ExecutorJenkins> js = new LinkedHashSet<>();
+            for (Map.Entry<String, String> jenkins : jenkinses.entrySet()) {
+                js.add(new ExecutorJenkins(jenkins.getValue(), jenkins.getKey()));
+            }
+
+            Map<String, NodeDefinition> ns = new HashMap<>();
+            Map<String, String> ps = new HashMap<>();
+            for (Map.Entry<String, String> node : nodes.entrySet()) {
+                NodeDefinition definition = DEFINITIONS.create(node.getKey(), node.getValue());
+                if (definition == null) throw new IllegalStateException("Unknown node definition in " + node.getKey());
+                ns.put(definition.getName(), definition);
+                String path = paths == null ? null : paths.get(node.getKey());
+                ps.put(node.getKey(), path == null ? "nodes/" + node.getKey() : path);
+            }
+
+            Map<String, ObjectId> bs = new HashMap<>();
+            for (Map.Entry<String, String> blob : blobs.entrySet()) {
+                bs.put(blob.getKey(), ObjectId.fromString(blob.getValue()));
+            }
+
+            return new Snapshot(
+                    ObjectId.fromString(source), config, Collections.unmodifiableSet(js), ns,
+                    Collections.unmodifiableMap(ps), Collections.unmodifiableMap(bs), null
+            );
+        }
+    }
+
+    /**
+     * Get notified about new config repo revisions.
+     *
+     * @see #addListener(Listener)
+     */
+    public interface Listener {
+        /**
+         * Snapshot of new revision was read.
+         */
+        void onChange(@Nonnull Snapshot snapshot);
+    }
+
     /**
      * Snapshot of the configuration at particular point in time.
      */
@@ -289,17 +832,59 @@ public class ConfigRepo {
         private final @Nonnull HashMap<String, String> config;
         private final @Nonnull Set<ExecutorJenkins> jenkinses;
         private final @Nonnull Map<String, NodeDefinition> nodes;
+        // Repository paths keyed by declaring file name
+        private final @Nonnull Map<String, String> nodePaths;
+        // Blob ids keyed by path in repository
+        private final @Nonnull Map<String, ObjectId> blobs;
+        private final @CheckForNull Diff diff;
+        // Executor lookup indexes
+        private final @Nonnull Map<String, ExecutorJenkins> jenkinsesByUrl;
+        private final @Nonnull Map<URI, ExecutorJenkins> jenkinsesByUri;
+        private final @Nonnull Map<String, ExecutorJenkins> jenkinsesByName;
+        // Node lookup index by declaring file name
+        private final @Nonnull Map<String, NodeDefinition> nodesByFileName;
+        // Created on first label query
+        private volatile @CheckForNull LabelIndex labelIndex;
 
         private Snapshot(
                 @Nonnull ObjectId source,
                 @Nonnull HashMap<String, String> config,
                 @Nonnull Set<ExecutorJenkins> jenkinses,
-                @Nonnull Map<String, NodeDefinition> nodes
+                @Nonnull Map<String, NodeDefinition> nodes,
+                @Nonnull Map<String, String> nodePaths,
+                @Nonnull Map<String, ObjectId> blobs,
+                @CheckForNull Diff diff
         ) {
             this.source = source;
             this.config = config;
             this.jenkinses = jenkinses;
             this.nodes = nodes;
+            this.nodePaths = nodePaths;
+            this.blobs = blobs;
+            this.diff = diff;
+
+            jenkinsesByUrl = new HashMap<>(jenkinses.size());
+            jenkinsesByUri = new HashMap<>(jenkinses.size());
+            jenkinsesByName = new HashMap<>(jenkinses.size());
+            for (ExecutorJenkins jenkins : jenkinses) {
+                jenkinsesByUrl.put(jenkins.getUrl().toExternalForm(), jenkins);
+                jenkinsesByUri.put(jenkins.getUri(), jenkins);
+                jenkinsesByName.put(jenkins.getName(), jenkins);
+            }
+
+            nodesByFileName = new HashMap<>(nodes.size());
+            for (NodeDefinition node : nodes.values()) {
+                nodesByFileName.put(node.getDeclaringFileName(), node);
+            }
+        }
+
+        /**
+         * Changes in nodes compared to the snapshot this one was read after.
+         *
+         * @return The diff or null if there was no previous snapshot.
+         */
+        public @CheckForNull Diff getDiff() {
+            return diff;
         }
 
         public @Nonnull String getSource() {
@@ -320,13 +905,13 @@ public class ConfigRepo {
 
         public @Nonnull ExecutorJenkins getJenkinsByUrl(@Nonnull String url) throws NoSuchElementException {
             if (url == null) throw new IllegalArgumentException("null url provided");
+            ExecutorJenkins jenkins = jenkinsesByUrl.get(url);
+            if (jenkins != null) return jenkins;
+
+            // Not in the form it was configured, compare normalized
             try {
-                URI uri = new URI(url);
-                for (ExecutorJenkins jenkins : jenkinses) {
-                    if (jenkins.getUrl().toURI().equals(uri)) {
-                        return jenkins;
-                    }
-                }
+                jenkins = jenkinsesByUri.get(new URI(url));
+                if (jenkins != null) return jenkins;
             } catch (URISyntaxException e) {
                 throw new AssertionError(e);
             }
@@ -335,19 +920,186 @@ public class ConfigRepo {
         }
 
         public @Nonnull ExecutorJenkins getJenkinsByName(@Nonnull String name) throws NoSuchElementException {
-            for (ExecutorJenkins jenkins : jenkinses) {
-                if (jenkins.getName().equals(name)) {
-                    return jenkins;
-                }
-            }
+            ExecutorJenkins jenkins = jenkinsesByName.get(name);
+            if (jenkins != null) return jenkins;
 
             throw new NoSuchElementException("No Jenkins executor configured for name: " + name);
         }
 
+        /**
+         * Blob id of the file declaring the node in this revision.
+         *
+         * @return The id or null if the definition is not part of this snapshot or the id is not known.
+         */
+        public @CheckForNull ObjectId getBlob(@Nonnull NodeDefinition definition) {
+            NodeDefinition own = nodes.get(definition.getName());
+            if (own == null) return null;
+            ObjectId blob = getNodeBlob(own.getDeclaringFileName());
+            if (!isSameDefinition(own, blob, definition, null)) return null;
+            return blob;
+        }
+
+        private @CheckForNull ObjectId getNodeBlob(@Nonnull String fileName) {
+            String path = nodePaths.get(fileName);
+            return path == null ? null : blobs.get(path);
+        }
+
+        /**
+         * Get node definition by declaring file name and its blob id.
+         *
+         * @return The definition or null if the snapshot does not have the file with such content.
+         */
+        public @CheckForNull NodeDefinition getNodeDefinition(@Nonnull String fileName, @Nonnull ObjectId blob) {
+            if (!blob.equals(getNodeBlob(fileName))) return null;
+            return nodesByFileName.get(fileName);
+        }
+
         public @Nonnull String getOrchestratorUrl() {
             String url = config.get(KEY_CONFIG_ORCHESTRATOR_URL);
             if (url == null) throw new AssertionError(); // Should not be instantiated by ConfigRepo
             return url;
         }
+
+        /**
+         * Determine if some of the nodes matches the label.
+         *
+         * @return true if there is a node the label matches, false otherwise or in case of no label.
+         */
+        public boolean canProvision(@CheckForNull Label label) {
+            if (label == null) return false;
+            return getLabelIndex().matches(label);
+        }
+
+        /**
+         * @return Nodes having the label atom assigned.
+         */
+        public @Nonnull Set<String> getNodesByLabelAtom(@Nonnull LabelAtom atom) {
+            Set<String> nodes = getLabelIndex().nodesByAtom.get(atom);
+            return nodes == null ? Collections.<String>emptySet() : nodes;
+        }
+
+        private @Nonnull LabelIndex getLabelIndex() {
+            LabelIndex index = labelIndex;
+            if (index == null) {
+                // Racing threads might create it twice, the result is the same
+                labelIndex = index = new LabelIndex(nodes);
+            }
+            return index;
+        }
+
+        /**
+         * Parsed node labels of the snapshot.
+         *
+         * Nodes tends to share the same label sets so label expressions are evaluated against distinct sets only, and
+         * the result is remembered as the nodes do not change for the snapshot.
+         */
+        private static final class LabelIndex {
+            private final @Nonnull Set<Set<LabelAtom>> atomSets;
+            private final @Nonnull Map<LabelAtom, Set<String>> nodesByAtom;
+            // Keyed by label expression
+            private final @Nonnull Map<String, Boolean> matches = new ConcurrentHashMap<>();
+
+            private LabelIndex(@Nonnull Map<String, NodeDefinition> nodes) {
+                Set<Set<LabelAtom>> atomSets = new HashSet<>();
+                Map<LabelAtom, Set<String>> nodesByAtom = new HashMap<>();
+                for (NodeDefinition node : nodes.values()) {
+                    Set<LabelAtom> atoms = Collections.unmodifiableSet(new HashSet<>(node.getLabelAtoms()));
+                    atomSets.add(atoms);
+                    for (LabelAtom atom : atoms) {
+                        Set<String> names = nodesByAtom.get(atom);
+                        if (names == null) {
+                            nodesByAtom.put(atom, names = new HashSet<>());
+                        }
+                        names.add(node.getName());
+                    }
+                }
+                for (Map.Entry<LabelAtom, Set<String>> entry : nodesByAtom.entrySet()) {
+                    entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+                }
+                this.atomSets = Collections.unmodifiableSet(atomSets);
+                this.nodesByAtom = Collections.unmodifiableMap(nodesByAtom);
+            }
+
+            private boolean matches(@Nonnull Label label) {
+                if (label instanceof LabelAtom) return nodesByAtom.containsKey(label);
+
+                String expression = label.getExpression();
+                Boolean matches = this.matches.get(expression);
+                if (matches == null) {
+                    matches = false;
+                    for (Set<LabelAtom> atoms : atomSets) {
+                        if (label.matches(atoms)) {
+                            matches = true;
+                            break;
+                        }
+                    }
+                    this.matches.put(expression, matches);
+                }
+                return matches;
+            }
+        }
+
+        /**
+         * Names of nodes added, removed or changed between two snapshots.
+         */
+        public static final class Diff {
+            private final @Nonnull String base;
+            private final @Nonnull Set<String> added;
+            private final @Nonnull Set<String> removed;
+            private final @Nonnull Set<String> changed;
+
+            private Diff(
+                    @Nonnull Snapshot previous, @Nonnull Map<String, NodeDefinition> nodes,
+                    @Nonnull Map<String, String> nodePaths, @Nonnull Map<String, ObjectId> blobs
+            ) {
+                base = previous.getSource();
+
+                Map<String, NodeDefinition> previousNodes = previous.getNodes();
+                Set<String> added = new HashSet<>(nodes.keySet());
+                added.removeAll(previousNodes.keySet());
+                Set<String> removed = new HashSet<>(previousNodes.keySet());
+                removed.removeAll(nodes.keySet());
+
+                Set<String> changed = new HashSet<>();
+                for (Map.Entry<String, NodeDefinition> entry : nodes.entrySet()) {
+                    NodeDefinition was = previousNodes.get(entry.getKey());
+                    NodeDefinition is = entry.getValue();
+                    if (was == null) continue;
+
+                    String path = nodePaths.get(is.getDeclaringFileName());
+                    ObjectId isBlob = path == null ? null : blobs.get(path);
+                    if (!isSameDefinition(was, previous.getNodeBlob(was.getDeclaringFileName()), is, isBlob)) {
+                        changed.add(entry.getKey());
+                    }
+                }
+
+                this.added = Collections.unmodifiableSet(added);
+                this.removed = Collections.unmodifiableSet(removed);
+                this.changed = Collections.unmodifiableSet(changed);
+            }
+
+            /**
+             * @return Revision of the snapshot this is a diff against.
+             */
+            public @Nonnull String getBase() {
+                return base;
+            }
+
+            public @Nonnull Set<String> getAddedNodes() {
+                return added;
+            }
+
+            public @Nonnull Set<String> getRemovedNodes() {
+                return removed;
+            }
+
+            public @Nonnull Set<String> getChangedNodes() {
+                return changed;
+            }
+
+            public boolean isEmpty() {
+                return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+            }
+        }
     }
 }
@@ -38,7 +38,9 @@ import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
@@ -70,7 +72,7 @@ public class ConfigRepoAdminMonitor extends AdministrativeMonitor {
 
     @Override
     public boolean isActivated() {
-        return !errors.isEmpty();
+        return !errors.isEmpty() || !getOpenCircuits().isEmpty();
     }
 
     @Override
@@ -90,6 +92,19 @@ public class ConfigRepoAdminMonitor extends AdministrativeMonitor {
         return new HashMap<>(errors);
     }
 
+    /**
+     * @return Circuit breakers of Jenkins instances not responding at the moment.
+     */
+    public @Nonnull List<CircuitBreaker> getOpenCircuits() {
+        List<CircuitBreaker> open = new ArrayList<>();
+        for (CircuitBreaker breaker : RestEndpoint.getCircuitBreakers().values()) {
+            if (breaker.getState() != CircuitBreaker.State.CLOSED) {
+                open.add(breaker);
+            }
+        }
+        return open;
+    }
+
     @Initializer(after = InitMilestone.PLUGINS_STARTED)
     @Restricted(NoExternalUse.class)
     public static void checkNodeSharingRole() throws AbortException {
@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.redhat.jenkins.nodesharing;
+
+import hudson.Util;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Config repositories shared across the JVM, keyed by url.
+ *
+ * All owners of the same repository share one fetch, one working copy and one parsed {@link ConfigRepo.Snapshot}. The
+ * repository stays registered while there is an owner that acquired it and have not released it. Owners are
+ * referenced weakly so the repository is released also when the owner is collected.
+ */
+public final class ConfigRepoRegistry {
+
+    @GuardedBy("REPOS")
+    private static final Map<String, Entry> REPOS = new HashMap<>();
+
+    private ConfigRepoRegistry() {}
+
+    /**
+     * Get shared repository for url.
+     *
+     * @param workingDir Directory to use in case the repository is not registered yet, ignored otherwise.
+     * @param owner Object to hold the reference until released.
+     */
+    public static @Nonnull ConfigRepo acquire(@Nonnull String url, @Nonnull File workingDir, @Nonnull Object owner) {
+        synchronized (REPOS) {
+            Entry entry = REPOS.get(url);
+            if (entry == null) {
+                entry = new Entry(new ConfigRepo(url, workingDir));
+                REPOS.put(url, entry);
+            }
+            entry.owners.add(owner);
+            return entry.repo;
+        }
+    }
+
+    /**
+     * Drop owner's reference to the repository.
+     *
+     * @return true if the repository is no longer used and was unregistered.
+     */
+    public static boolean release(@Nonnull String url, @Nonnull Object owner) {
+        synchronized (REPOS) {
+            Entry entry = unregister(url, owner);
+            if (entry == null) return REPOS.get(url) == null;
+
+            entry.repo.closeObjects();
+            return true;
+        }
+    }
+
+    /**
+     * Drop owner's reference to the repository and delete its working copy in case it is no longer used.
+     *
+     * The working copy is deleted before the repository can be acquired again so the new instance does not start using
+     * the directory being deleted.
+     *
+     * @return true if the repository is no longer used and was unregistered.
+     */
+    public static boolean releaseAndDelete(@Nonnull String url, @Nonnull Object owner) throws IOException {
+        synchronized (REPOS) {
+            Entry entry = unregister(url, owner);
+            if (entry == null) return REPOS.get(url) == null;
+
+            entry.repo.closeObjects();
+            Util.deleteRecursive(entry.repo.getWorkingDir());
+            return true;
+        }
+    }
+
+    // Remove owner, returning the entry in case it was the last one
+    @GuardedBy("REPOS")
+    private static @CheckForNull Entry unregister(@Nonnull String url, @Nonnull Object owner) {
+        Entry entry = REPOS.get(url);
+        if (entry == null) return null;
+
+        entry.owners.remove(owner);
+        if (!entry.owners.isEmpty()) return null;
+
+        REPOS.remove(url);
+        return entry;
+    }
+
+    /**
+     * @return All repositories in use.
+     */
+    public static @Nonnull Collection<ConfigRepo> getAll() {
+        synchronized (REPOS) {
+            ArrayList<ConfigRepo> repos = new ArrayList<>(REPOS.size());
+            for (Iterator<Entry> it = REPOS.values().iterator(); it.hasNext();) {
+                Entry entry = it.next();
+                if (entry.owners.isEmpty()) { // All owners collected
+                    it.remove();
+                    entry.repo.closeObjects();
+                } else {
+                    repos.add(entry.repo);
+                }
+            }
+            return repos;
+        }
+    }
+
+    private static final class Entry {
+        private final @Nonnull ConfigRepo repo;
+        private final @Nonnull Set<Object> owners = Collections.newSetFromMap(new WeakHashMap<Object, Boolean>());
+
+        private Entry(@Nonnull ConfigRepo repo) {
+            this.repo = repo;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.redhat.jenkins.nodesharing;
+
+import hudson.FilePath;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Files of config repository revision being read.
+ *
+ * Paths are relative to repository root, separated by '/'.
+ */
+/*package*/ abstract class ConfigTree implements Closeable {
+
+    /**
+     * @return Blob ids keyed by path. Empty in case they are not known.
+     */
+    public abstract @Nonnull Map<String, ObjectId> getBlobs();
+
+    public abstract boolean isFile(@Nonnull String path) throws IOException, InterruptedException;
+
+    public abstract boolean isDirectory(@Nonnull String path) throws IOException, InterruptedException;
+
+    /**
+     * @return Sorted names of directory entries.
+     */
+    public abstract @Nonnull List<String> list(@Nonnull String dir) throws IOException, InterruptedException;
+
+    public abstract @Nonnull InputStream read(@Nonnull String path) throws IOException, InterruptedException;
+
+    public abstract @Nonnull String readToString(@Nonnull String path) throws IOException, InterruptedException;
+
+    @Override
+    public void close() {}
+
+    /**
+     * Checked out revision.
+     */
+    /*package*/ static final class WorkingTree extends ConfigTree {
+        private final @Nonnull FilePath root;
+        private final @Nonnull Map<String, ObjectId> blobs;
+
+        /*package*/ WorkingTree(@Nonnull FilePath root, @Nonnull Map<String, ObjectId> blobs) {
+            this.root = root;
+            this.blobs = blobs;
+        }
+
+        @Override public @Nonnull Map<String, ObjectId> getBlobs() {
+            return blobs;
+        }
+
+        @Override public boolean isFile(@Nonnull String path) throws IOException, InterruptedException {
+            FilePath file = root.child(path);
+            return file.exists() && !file.isDirectory();
+        }
+
+        @Override public boolean isDirectory(@Nonnull String path) throws IOException, InterruptedException {
+            return root.child(path).isDirectory();
+        }
+
+        @Override public @Nonnull List<String> list(@Nonnull String dir) throws IOException, InterruptedException {
+            List<String> names = new ArrayList<>();
+            for (FilePath entry : root.child(dir).list()) {
+                names.add(entry.getName());
+            }
+            Collections.sort(names);
+            return names;
+        }
+
+        @Override public @Nonnull InputStream read(@Nonnull String path) throws IOException, InterruptedException {
+            return root.child(path).read();
+        }
+
+        @Override public @Nonnull String readToString(@Nonnull String path) throws IOException, InterruptedException {
+            return root.child(path).readToString();
+        }
+    }
+
+    /**
+     * Tree of a commit read from git object database, no working tree needed.
+     */
+    /*package*/ static final class GitTree extends ConfigTree {
+        private final @Nonnull Repository repo;
+        private final @Nonnull Map<String, ObjectId> blobs = new HashMap<>();
+        private final @Nonnull Set<String> dirs = new HashSet<>();
+
+        /*package*/ GitTree(@Nonnull Repository repo, @Nonnull ObjectId commit) throws IOException {
+            this.repo = repo;
+
+            ObjectId tree = repo.resolve(commit.name() + "^{tree}");
+            if (tree == null) throw new FileNotFoundException("No tree found for " + commit.name());
+
+            try (TreeWalk walk = new TreeWalk(repo)) {
+                walk.addTree(tree);
+                walk.setRecursive(false);
+                while (walk.next()) {
+                    if (walk.isSubtree()) {
+                        dirs.add(walk.getPathString());
+                        walk.enterSubtree();
+                    } else {
+                        blobs.put(walk.getPathString(), walk.getObjectId(0));
+                    }
+                }
+            }
+        }
+
+        @Override public @Nonnull Map<String, ObjectId> getBlobs() {
+            return Collections.unmodifiableMap(blobs);
+        }
+
+        @Override public boolean isFile(@Nonnull String path) {
+            return blobs.containsKey(path);
+        }
+
+        @Override public boolean isDirectory(@Nonnull String path) {
+            return dirs.contains(path);
+        }
+
+        @Override public @Nonnull List<String> list(@Nonnull String dir) {
+            String prefix = dir + "/";
+            List<String> names = new ArrayList<>();
+            for (String path : blobs.keySet()) {
+                addChild(names, prefix, path);
+            }
+            for (String path : dirs) {
+                addChild(names, prefix, path);
+            }
+            Collections.sort(names);
+            return names;
+        }
+
+        private static void addChild(List<String> names, String prefix, String path) {
+            if (path.startsWith(prefix) && path.indexOf('/', prefix.length()) == -1) {
+                names.add(path.substring(prefix.length()));
+            }
+        }
+
+        @Override public @Nonnull InputStream read(@Nonnull String path) throws IOException {
+            return repo.open(getBlob(path), Constants.OBJ_BLOB).openStream();
+        }
+
+        @Override public @Nonnull String readToString(@Nonnull String path) throws IOException {
+            return new String(repo.open(getBlob(path), Constants.OBJ_BLOB).getBytes(), StandardCharsets.UTF_8);
+        }
+
+        private @Nonnull ObjectId getBlob(@Nonnull String path) throws FileNotFoundException {
+            ObjectId blob = blobs.get(path);
+            if (blob == null) throw new FileNotFoundException("No file " + path + " in config repository");
+            return blob;
+        }
+
+        @Override public void close() {
+            repo.close();
+        }
+    }
+}
@@ -31,6 +31,7 @@ import org.apache.commons.codec.digest.DigestUtils;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Objects;
@@ -43,6 +44,9 @@ public class ExecutorJenkins {
     private final @Nonnull URL url;
     private final @Nonnull String name;
     private /*final once initialized*/ @CheckForNull RestEndpoint rest;
+    // Derived from url so equality and lookups do not convert it over and over
+    private /*final*/ transient @Nonnull URI uri;
+    private /*final*/ transient int hashCode;
 
     public ExecutorJenkins(@Nonnull String url, @Nonnull String name) {
         try {
@@ -56,10 +60,25 @@ public class ExecutorJenkins {
         }
         try {
             this.url = new URL(url);
-            this.url.toURI();
-        } catch (MalformedURLException|URISyntaxException e) {
+        } catch (MalformedURLException e) {
             throw new IllegalArgumentException(e);
         }
+        this.uri = computeUri(this.url);
+        this.hashCode = Objects.hash(uri, name);
+    }
+
+    private static @Nonnull URI computeUri(@Nonnull URL url) {
+        try {
+            return url.toURI();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    protected Object readResolve() {
+        uri = computeUri(url);
+        hashCode = Objects.hash(uri, name);
+        return this;
     }
 
     // Make safe and readable name from URL
@@ -77,6 +96,10 @@ public class ExecutorJenkins {
         return url;
     }
 
+    /*package*/ @Nonnull URI getUri() {
+        return uri;
+    }
+
     /**
      * Get URL to executors REST endpoint.
      *
@@ -87,30 +110,39 @@ public class ExecutorJenkins {
     }
 
     public @Nonnull RestEndpoint getRest(@Nonnull String configRepoUrl, UsernamePasswordCredentials creds) {
-        if (rest != null) return rest;
+        // Recreate the endpoint in case the credential has changed
+        if (rest != null && (creds == null || rest.isAuthenticatedBy(creds))) return rest;
         return rest = new RestEndpoint(url.toExternalForm(),  "/cloud/" + inferCloudName(configRepoUrl) + "/api", creds);
     }
 
+    /**
+     * @return Circuit breaker guarding requests to this executor, null if it was not talked to yet.
+     */
+    public @CheckForNull CircuitBreaker getCircuitBreaker() {
+        return RestEndpoint.getCircuitBreaker(url.toExternalForm());
+    }
+
+    /**
+     * @param operation Name of the operation, the last path segment of the REST call.
+     * @return Timeout in ms of the operation called on this executor.
+     * @see RestEndpoint#getTimeout(String, String)
+     */
+    public int getTimeout(@Nonnull String operation) {
+        return RestEndpoint.getTimeout(url.toExternalForm(), operation);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
         ExecutorJenkins that = (ExecutorJenkins) o;
-        try {
-            return Objects.equals(name, that.name) && Objects.equals(url.toURI(), that.url.toURI());
-        } catch (URISyntaxException e) {
-            throw new AssertionError(e);
-        }
+        return hashCode == that.hashCode && name.equals(that.name) && uri.equals(that.uri);
     }
 
     @Override
     public int hashCode() {
-        try {
-            return Objects.hash(url.toURI(), name);
-        } catch (URISyntaxException e) {
-            throw new AssertionError(e);
-        }
+        return hashCode;
     }
 
     @Override public String toString() {
@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.redhat.jenkins.nodesharing;
+
+import com.google.gson.stream.JsonWriter;
+import org.apache.http.pool.PoolStats;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Metrics exposed by node sharing Jenkinses.
+ *
+ * @see RestMetrics
+ * @see NodeDefinitionCacheMetrics
+ */
+public final class Metrics {
+
+    private Metrics() {}
+
+    /**
+     * Write metrics as JSON, or in Prometheus text format in case requested by {@code format=prometheus} parameter.
+     */
+    public static void write(@Nonnull StaplerRequest req, @Nonnull StaplerResponse rsp) throws IOException {
+        PoolStats pool = RestEndpoint.getConnectionPoolStats();
+        NodeDefinitionCache definitions = NodeDefinitionCache.getInstance();
+        if ("prometheus".equals(req.getParameter("format"))) {
+            rsp.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+            PrintWriter out = rsp.getWriter();
+            RestMetrics.writePrometheus(out, pool);
+            NodeDefinitionCacheMetrics.writePrometheus(out, definitions);
+            out.flush();
+        } else {
+            rsp.setContentType("application/json; charset=UTF-8");
+            JsonWriter out = new JsonWriter(rsp.getWriter());
+            out.beginObject();
+            RestMetrics.writeJson(out, pool);
+            NodeDefinitionCacheMetrics.writeJson(out, definitions);
+            out.endObject();
+            out.flush();
+        }
+    }
+}
@@ -23,34 +23,53 @@
  */
 package com.redhat.jenkins.nodesharing;
 
-import groovy.util.Node;
-import groovy.util.NodeList;
-import groovy.util.XmlParser;
 import hudson.FilePath;
 import hudson.model.labels.LabelAtom;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.Immutable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringReader;
 import java.util.Collection;
+import java.util.Collections;
 
 /**
  * Definition of the node in Config Repository.
  *
- * This abstraction is ready to support various configuration formats.
+ * This abstraction is ready to support various configuration formats. The textual definition can be read lazily from a
+ * {@link Source}, in which case only the name and labels are held until it is needed. Its content never changes, the
+ * definition and label atoms are only memoized once read.
  */
 @Immutable
 public abstract class NodeDefinition implements Serializable {
     private static final long serialVersionUID = -2736787874164916297L;
 
     private final @Nonnull String fileName;
-    private final @Nonnull String definition;
+    // Null until read in case it is loaded lazily
+    private volatile @CheckForNull String definition;
+    private final transient @CheckForNull Source source;
+    // Parsed on first use
+    private transient volatile @CheckForNull Collection<LabelAtom> labelAtoms;
 
     protected NodeDefinition(@Nonnull String fileName, @Nonnull String definition) {
         this.fileName = fileName;
         this.definition = definition;
+        this.source = null;
+    }
+
+    /**
+     * Definition to be read from the source on first use.
+     */
+    protected NodeDefinition(@Nonnull String fileName, @Nonnull Source source) {
+        this.fileName = fileName;
+        this.definition = null;
+        this.source = source;
     }
 
     /**
@@ -75,12 +94,43 @@ public abstract class NodeDefinition implements Serializable {
      * Textual definition of the node.
      * @see #create(String, String)
      */
-    public @Nonnull String getDefinition() {
+    public @Nonnull String getDefinition() throws IllegalStateException {
+        String definition = this.definition;
+        if (definition == null) {
+            this.definition = definition = readDefinition();
+        }
         return definition;
     }
 
+    // Get the definition not keeping it around in case it was not loaded yet
+    /*package*/ @Nonnull String readDefinition() throws IllegalStateException {
+        String definition = this.definition;
+        if (definition != null) return definition;
+
+        if (source == null) throw new AssertionError("Neither definition nor its source present for " + fileName);
+        try {
+            return source.read();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read definition of " + fileName, e);
+        }
+    }
+
+    /*package*/ boolean isLoaded() {
+        return definition != null;
+    }
+
+    // Never serialize without the definition
+    protected Object writeReplace() {
+        getDefinition();
+        return this;
+    }
+
     public @Nonnull Collection<LabelAtom> getLabelAtoms() {
-        return LabelAtom.parse(getLabel());
+        Collection<LabelAtom> atoms = labelAtoms;
+        if (atoms == null) {
+            labelAtoms = atoms = Collections.unmodifiableSet(LabelAtom.parse(getLabel()));
+        }
+        return atoms;
     }
 
     public static @CheckForNull NodeDefinition create(@Nonnull FilePath file) throws IOException, InterruptedException {
@@ -100,33 +150,123 @@ public abstract class NodeDefinition implements Serializable {
         return null;
     }
 
+    /**
+     * Create definition from file name and the content, that is not retained but read from the source again once needed.
+     *
+     * @see #create(String, String)
+     */
+    public static @CheckForNull NodeDefinition create(
+            @Nonnull String declaringFileName, @Nonnull String definition, @Nonnull Source source
+    ) {
+        if (declaringFileName.endsWith(".xml")) {
+            return new Xml(declaringFileName, definition, source);
+        }
+        return null;
+    }
+
+    /**
+     * Content of lazily loaded definition.
+     */
+    public interface Source {
+        /**
+         * @return The content the definition was created from.
+         */
+        @Nonnull String read() throws IOException;
+    }
+
     /**
      * XStream based node definition.
      */
     public static final class Xml extends NodeDefinition {
         private static final long serialVersionUID = 6932395574201798664L;
 
+        private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+        static {
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        }
+
         private final @Nonnull String name;
         private final @Nonnull String label;
 
         public Xml(@Nonnull String fileName, @Nonnull String xml) {
             super(fileName, xml);
-            this.name = fileName.replaceAll(".xml$", "");
+            this.name = getName(fileName);
+            this.label = getLabel(name, xml);
+        }
+
+        /**
+         * Definition to be read from the source on first use.
+         *
+         * @param xml Content the source provides, only the label is kept.
+         */
+        public Xml(@Nonnull String fileName, @Nonnull String xml, @Nonnull Source source) {
+            super(fileName, source);
+            this.name = getName(fileName);
+            this.label = getLabel(name, xml);
+        }
+
+        private static @Nonnull String getName(@Nonnull String fileName) {
+            return fileName.replaceAll(".xml$", "");
+        }
 
-            Node xmlNode;
+        private static @Nonnull String getLabel(@Nonnull String name, @Nonnull String xml) {
+            String label;
             try {
-                xmlNode = new XmlParser().parseText(xml);
-            } catch (Exception e) {
+                label = readLabel(xml);
+            } catch (XMLStreamException e) {
                 throw new IllegalStateException("Cannot parse xml: " + xml, e);
             }
 
-            if (((NodeList) xmlNode.get("label")).isEmpty()) {
+            if (label == null) {
                 throw new IllegalStateException("No labels found in " + xml);
             }
-            label = ((Node) ((NodeList) xmlNode.get("label")).get(0)).text().trim();
+            label = label.trim();
             if (label.isEmpty()) {
                 throw new IllegalArgumentException("No labels specified for node " + name);
             }
+            return label;
+        }
+
+        /**
+         * Read text of the first <tt>label</tt> element directly in the root element.
+         *
+         * The document is streamed and not read further once the label is found, the rest is left for XStream to
+         * deserialize the node.
+         *
+         * @return The label or null if there is none.
+         */
+        private static @CheckForNull String readLabel(@Nonnull String xml) throws XMLStreamException {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+            try {
+                int depth = 0;
+                StringBuilder label = null;
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                        case XMLStreamConstants.START_ELEMENT:
+                            depth++;
+                            if (depth == 2 && "label".equals(reader.getLocalName())) {
+                                label = new StringBuilder();
+                            }
+                            break;
+                        case XMLStreamConstants.END_ELEMENT:
+                            if (label != null && depth == 2) return label.toString();
+                            depth--;
+                            break;
+                        case XMLStreamConstants.CHARACTERS:
+                        case XMLStreamConstants.CDATA:
+                            if (label != null && depth == 2) {
+                                label.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                            }
+                            break;
+                        default:
+                            // Irrelevant
+                    }
+                }
+                return null;
+            } finally {
+                reader.close();
+            }
         }
 
         @Override
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.redhat.jenkins.nodesharing;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parsed node definitions by the content they ware created from.
+ *
+ * Definitions are keyed by git blob id of the content and the declaring file name, so identical file is parsed once no
+ * matter how many snapshots or reservations it appears in. Least recently used definitions are evicted once there is
+ * more than {@link #SIZE} of them.
+ */
+public final class NodeDefinitionCache {
+
+    // Maximal number of definitions held
+    private static final int SIZE = Integer.getInteger(
+            "com.redhat.jenkins.nodesharing.NodeDefinitionCache.SIZE", 10000
+    );
+
+    private static final NodeDefinitionCache INSTANCE = new NodeDefinitionCache(SIZE);
+
+    private final int size;
+
+    @GuardedBy("definitions")
+    private final LinkedHashMap<Key, NodeDefinition> definitions;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public static @Nonnull NodeDefinitionCache getInstance() {
+        return INSTANCE;
+    }
+
+    /*package*/ NodeDefinitionCache(int size) {
+        this.size = size;
+        this.definitions = new LinkedHashMap<Key, NodeDefinition>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<Key, NodeDefinition> eldest) {
+                if (size() <= NodeDefinitionCache.this.size) return false;
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get cached definition.
+     *
+     * @param fileName Declaring file name.
+     * @param blob Git blob id of the file content.
+     * @return The definition or null if not cached.
+     */
+    public @CheckForNull NodeDefinition get(@Nonnull String fileName, @Nonnull ObjectId blob) {
+        NodeDefinition definition;
+        synchronized (definitions) {
+            definition = definitions.get(new Key(fileName, blob));
+        }
+        (definition == null ? misses : hits).incrementAndGet();
+        return definition;
+    }
+
+    public void put(@Nonnull ObjectId blob, @Nonnull NodeDefinition definition) {
+        synchronized (definitions) {
+            definitions.put(new Key(definition.getDeclaringFileName(), blob), definition);
+        }
+    }
+
+    /**
+     * Get cached definition or create it from the content.
+     *
+     * @see NodeDefinition#create(String, String)
+     */
+    public @CheckForNull NodeDefinition create(@Nonnull String fileName, @Nonnull String content) {
+        ObjectId blob = blobId(content);
+        NodeDefinition definition = get(fileName, blob);
+        if (definition == null) {
+            definition = NodeDefinition.create(fileName, content);
+            if (definition != null) {
+                put(blob, definition);
+            }
+        }
+        return definition;
+    }
+
+    /**
+     * Compute the id git would assign to the content stored as a file.
+     */
+    public static @Nonnull ObjectId blobId(@Nonnull String content) {
+        return new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int getSize() {
+        synchronized (definitions) {
+            return definitions.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private static final class Key {
+        private final @Nonnull String fileName;
+        private final @Nonnull ObjectId blob;
+
+        private Key(@Nonnull String fileName, @Nonnull ObjectId blob) {
+            this.fileName = fileName;
+            this.blob = blob.copy(); // Do not hold mutable ids
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+            return blob.equals(key.blob) && fileName.equals(key.fileName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * blob.hashCode() + fileName.hashCode();
+        }
+    }
+}
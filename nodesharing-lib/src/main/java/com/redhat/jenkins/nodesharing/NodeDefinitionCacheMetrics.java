@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.redhat.jenkins.nodesharing;
+
+import com.google.gson.stream.JsonWriter;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Size and effectiveness of {@link NodeDefinitionCache}.
+ */
+public final class NodeDefinitionCacheMetrics {
+
+    private NodeDefinitionCacheMetrics() {}
+
+    /**
+     * Write the metrics as a field of JSON object.
+     */
+    /*package*/ static void writeJson(@Nonnull JsonWriter out, @Nonnull NodeDefinitionCache definitions) throws IOException {
+        out.name("definitionCache").beginObject();
+        out.name("size").value(definitions.getSize());
+        out.name("hits").value(definitions.getHits());
+        out.name("misses").value(definitions.getMisses());
+        out.name("evictions").value(definitions.getEvictions());
+        out.endObject();
+    }
+
+    /**
+     * Write the metrics in Prometheus text format.
+     */
+    /*package*/ static void writePrometheus(@Nonnull PrintWriter out, @Nonnull NodeDefinitionCache definitions) {
+        out.println("# HELP nodesharing_definition_cache_size Parsed node definitions cached.");
+        out.println("# TYPE nodesharing_definition_cache_size gauge");
+        out.println("nodesharing_definition_cache_size " + definitions.getSize());
+        out.println("# HELP nodesharing_definition_cache_lookups_total Node definition cache lookups by result.");
+        out.println("# TYPE nodesharing_definition_cache_lookups_total counter");
+        out.println("nodesharing_definition_cache_lookups_total{result=\"hit\"} " + definitions.getHits());
+        out.println("nodesharing_definition_cache_lookups_total{result=\"miss\"} " + definitions.getMisses());
+        out.println("# HELP nodesharing_definition_cache_evictions_total Node definitions evicted from cache.");
+        out.println("# TYPE nodesharing_definition_cache_evictions_total counter");
+        out.println("nodesharing_definition_cache_evictions_total " + definitions.getEvictions());
+    }
+}
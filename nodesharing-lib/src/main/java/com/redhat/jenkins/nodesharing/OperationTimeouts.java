@@ -0,0 +1,213 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.redhat.jenkins.nodesharing;
+
+import hudson.Util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Timeouts of individual REST operations.
+ *
+ * Every operation uses {@link RestEndpoint#TIMEOUT} unless overridden by
+ * {@code com.redhat.jenkins.nodesharing.RestEndpoint.TIMEOUT.<operation>} property. In adaptive mode
+ * ({@code com.redhat.jenkins.nodesharing.RestEndpoint.ADAPTIVE_TIMEOUT=true}), the timeout is derived from p99 latency of
+ * the recent calls of the operation to particular Jenkins multiplied by the headroom factor, and kept between the floor
+ * and the configured timeout. Calls that timed out count as taking the whole timeout so it grows back when the other side
+ * slows down.
+ */
+/*package*/ final class OperationTimeouts {
+    private static final Logger LOGGER = Logger.getLogger(OperationTimeouts.class.getName());
+
+    private static final String PROPERTY_PREFIX = "com.redhat.jenkins.nodesharing.RestEndpoint.";
+
+    /*package*/ static final boolean ADAPTIVE = Boolean.getBoolean(PROPERTY_PREFIX + "ADAPTIVE_TIMEOUT");
+    // Minimal adaptive timeout in ms
+    private static final int ADAPTIVE_FLOOR = Integer.getInteger(PROPERTY_PREFIX + "ADAPTIVE_TIMEOUT_FLOOR", 5 * 1000);
+    // Multiple of p99 latency used as adaptive timeout
+    private static final int ADAPTIVE_HEADROOM = Integer.getInteger(PROPERTY_PREFIX + "ADAPTIVE_TIMEOUT_HEADROOM", 3);
+
+    // Number of recent calls considered
+    private static final int WINDOW_SIZE = 256;
+    // Number of calls needed before the timeout adapts
+    private static final int MIN_SAMPLES = 32;
+
+    private final int defaultTimeout;
+    private final @Nonnull Properties properties;
+    private final boolean adaptive;
+
+    private final ConcurrentMap<String, Integer> configured = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    /**
+     * @param defaultTimeout Timeout in ms of operations not configured otherwise.
+     * @param properties Properties to read the operation timeouts from.
+     * @param adaptive Adapt the timeouts to the recent latency.
+     */
+    /*package*/ OperationTimeouts(int defaultTimeout, @Nonnull Properties properties, boolean adaptive) {
+        this.defaultTimeout = defaultTimeout;
+        this.properties = properties;
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * @return Timeout in ms configured for the operation.
+     */
+    /*package*/ int get(@Nonnull String operation) {
+        return getConfigured(operation);
+    }
+
+    /**
+     * @return Timeout in ms to be used for the operation with particular Jenkins.
+     */
+    /*package*/ int get(@Nonnull String remote, @Nonnull String operation) {
+        int configured = getConfigured(operation);
+        if (!adaptive) return configured;
+
+        Window window = windows.get(key(remote, operation));
+        return window == null ? configured : window.getTimeout(configured);
+    }
+
+    /**
+     * Record latency of the call the other side responded to.
+     *
+     * @param duration Duration in nanoseconds.
+     */
+    /*package*/ void record(@Nonnull String remote, @Nonnull String operation, long duration) {
+        if (!adaptive) return;
+
+        getWindow(remote, operation).add(TimeUnit.NANOSECONDS.toMillis(duration));
+    }
+
+    /**
+     * Record the call the other side have not responded to in time.
+     *
+     * @param timeout Timeout in ms the call used.
+     */
+    /*package*/ void recordTimeout(@Nonnull String remote, @Nonnull String operation, int timeout) {
+        if (!adaptive) return;
+
+        // Taking only the calls that completed would leave the window with the fast ones, not letting the timeout grow
+        getWindow(remote, operation).add(timeout);
+    }
+
+    private @Nonnull Window getWindow(@Nonnull String remote, @Nonnull String operation) {
+        String key = key(remote, operation);
+        Window window = windows.get(key);
+        if (window == null) {
+            Window created = new Window();
+            window = windows.putIfAbsent(key, created);
+            if (window == null) {
+                window = created;
+            }
+        }
+        return window;
+    }
+
+    private static @Nonnull String key(@Nonnull String remote, @Nonnull String operation) {
+        return remote + ' ' + operation;
+    }
+
+    private int getConfigured(@Nonnull String operation) {
+        Integer timeout = configured.get(operation);
+        if (timeout == null) {
+            timeout = parse(operation);
+            configured.putIfAbsent(operation, timeout);
+        }
+        return timeout;
+    }
+
+    private int parse(@Nonnull String operation) {
+        String property = PROPERTY_PREFIX + "TIMEOUT." + operation;
+        String value = Util.fixEmptyAndTrim(properties.getProperty(property));
+        if (value != null) {
+            try {
+                int timeout = Integer.parseInt(value);
+                if (timeout > 0) return timeout;
+                LOGGER.warning("Value of " + property + " is invalid, using default " + defaultTimeout);
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.WARNING, "Unable to parse " + property + ", using default value " + defaultTimeout, e);
+            }
+        }
+        return defaultTimeout;
+    }
+
+    /**
+     * Latencies of the most recent calls.
+     */
+    /*package*/ static final class Window {
+        @GuardedBy("this")
+        private final long[] samples = new long[WINDOW_SIZE];
+        @GuardedBy("this")
+        private int next = 0;
+        @GuardedBy("this")
+        private int size = 0;
+        // Recomputed once sufficient number of new samples arrives
+        @GuardedBy("this")
+        private long p99 = -1;
+        @GuardedBy("this")
+        private int sinceComputed = 0;
+
+        /*package*/ synchronized void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % WINDOW_SIZE;
+            if (size < WINDOW_SIZE) size++;
+            sinceComputed++;
+        }
+
+        /**
+         * @param configured Timeout in ms configured for the operation.
+         * @return Timeout in ms adapted to the recent latency.
+         */
+        /*package*/ int getTimeout(int configured) {
+            long p99 = getP99();
+            if (p99 < 0) return configured; // Not enough data
+
+            long adaptive = Math.max(ADAPTIVE_FLOOR, p99 * ADAPTIVE_HEADROOM);
+            return (int) Math.min(configured, adaptive);
+        }
+
+        /**
+         * @return p99 latency in ms or -1 if there are not enough samples.
+         */
+        private synchronized long getP99() {
+            if (size < MIN_SAMPLES) return -1;
+            if (p99 < 0 || sinceComputed >= WINDOW_SIZE / 16) {
+                long[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                p99 = sorted[(int) Math.ceil(size * 0.99) - 1];
+                sinceComputed = 0;
+            }
+            return p99;
+        }
+    }
+}
@@ -32,9 +32,13 @@ import com.redhat.jenkins.nodesharing.transport.Entity;
 import hudson.Util;
 import hudson.init.InitMilestone;
 import hudson.init.Initializer;
+import hudson.init.Terminator;
 import hudson.security.Permission;
 import hudson.security.PermissionGroup;
 import hudson.security.PermissionScope;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.util.ContextResettingExecutorService;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
@@ -50,27 +54,53 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicHeader;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.DoNotUse;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.SocketTimeoutException;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Rest endpoint representing "the other side" to talk to.
@@ -81,14 +111,15 @@ public class RestEndpoint {
     private static final Logger LOGGER = Logger.getLogger(RestEndpoint.class.getName());
 
     // Timeout for REST network communication in ms
-    public static final int TIMEOUT = parseTimeout();
+    public static final int TIMEOUT = parseTimeout(System.getProperties());
 
     // Default REST calls timeout in ms
     private static final int DEFAULT_TIMEOUT = 30 * 1000;
     private static final String PROPERTY_NAME = "com.redhat.jenkins.nodesharing.RestEndpoint.TIMEOUT";
 
-    private static int parseTimeout() {
-        String strTimeout = Util.fixEmptyAndTrim(System.getProperty(PROPERTY_NAME));
+    @VisibleForTesting
+    /*package*/ static int parseTimeout(@Nonnull Properties properties) {
+        String strTimeout = Util.fixEmptyAndTrim(properties.getProperty(PROPERTY_NAME));
         if (strTimeout != null) {
             try {
                 int timeout = Integer.parseInt(strTimeout);
@@ -107,6 +138,10 @@ public class RestEndpoint {
         return DEFAULT_TIMEOUT;
     }
 
+    private static final OperationTimeouts TIMEOUTS = new OperationTimeouts(
+            TIMEOUT, System.getProperties(), OperationTimeouts.ADAPTIVE
+    );
+
     private static final PermissionGroup NODE_SHARING_GROUP = new PermissionGroup(RestEndpoint.class, Messages._RestEndpoint_PermissionGroupName());
     public static final Permission RESERVE = new Permission(NODE_SHARING_GROUP, "Reserve", Messages._RestEndpoint_ReserveDescription(), null, PermissionScope.JENKINS);
 
@@ -122,22 +157,214 @@ public class RestEndpoint {
         throw new AssertionError("Permission " + permId + " not registered");
     }
 
-    private static final RequestConfig REQUEST_CONFIG = RequestConfig.custom()
-            .setConnectTimeout(TIMEOUT)
-            .setConnectionRequestTimeout(TIMEOUT)
-            .setSocketTimeout(TIMEOUT)
-            .build()
-    ;
+    /**
+     * Get timeout configured for particular operation.
+     *
+     * It is {@link #TIMEOUT} unless configured otherwise for the operation. This is the upper bound of the timeouts
+     * calls to individual Jenkins instances use, see {@link #getTimeout(String, String)}.
+     *
+     * @param operation Name of the operation, the last path segment of the REST call.
+     * @return Timeout in ms.
+     */
+    public static int getTimeout(@Nonnull String operation) {
+        return TIMEOUTS.get(operation);
+    }
+
+    /**
+     * Get timeout of particular operation called on particular Jenkins.
+     *
+     * It is the configured timeout of the operation, unless adaptive timeouts are enabled. In that case, it is shorter
+     * as long as the Jenkins responds fast.
+     *
+     * @param jenkinsUrl URL of the Jenkins called.
+     * @param operation Name of the operation, the last path segment of the REST call.
+     * @return Timeout in ms.
+     */
+    public static int getTimeout(@Nonnull String jenkinsUrl, @Nonnull String operation) {
+        return TIMEOUTS.get(jenkinsUrl, operation);
+    }
+
+    private static @Nonnull RequestConfig getRequestConfig(int timeout) {
+        return RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .build()
+        ;
+    }
+
+    // Connections kept open to a single Jenkins instance
+    private static final int MAX_CONNECTIONS_PER_ROUTE = Integer.getInteger(
+            "com.redhat.jenkins.nodesharing.RestEndpoint.MAX_CONNECTIONS_PER_ROUTE", 10
+    );
+    // Connections kept open in total
+    private static final int MAX_CONNECTIONS_TOTAL = Integer.getInteger(
+            "com.redhat.jenkins.nodesharing.RestEndpoint.MAX_CONNECTIONS_TOTAL", 100
+    );
+    // Time in ms after which idle pooled connection is closed
+    private static final long IDLE_CONNECTION_TIMEOUT = Long.getLong(
+            "com.redhat.jenkins.nodesharing.RestEndpoint.IDLE_CONNECTION_TIMEOUT", 60 * 1000
+    );
+
+    // Jenkins does not advertise keep-alive timeout so cap it not to reuse connections the other side has likely closed
+    private static final ConnectionKeepAliveStrategy KEEP_ALIVE_STRATEGY = new DefaultConnectionKeepAliveStrategy() {
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long duration = super.getKeepAliveDuration(response, context);
+            return duration > 0 && duration < IDLE_CONNECTION_TIMEOUT ? duration : IDLE_CONNECTION_TIMEOUT;
+        }
+    };
+
+    // Client shared by all endpoints so connections to particular Jenkins are reused across the calls
+    @GuardedBy("RestEndpoint.class")
+    private static @CheckForNull PoolingHttpClientConnectionManager connectionManager;
+    @GuardedBy("RestEndpoint.class")
+    private static @CheckForNull CloseableHttpClient client;
+
+    private static synchronized @Nonnull CloseableHttpClient getClient() {
+        if (client != null) return client;
+
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_CONNECTIONS_TOTAL);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        // Connections closed by the other side while idle in pool are detected before reused
+        connectionManager.setValidateAfterInactivity(2000);
+
+        return client = HttpClients.custom()
+                .useSystemProperties()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(KEEP_ALIVE_STRATEGY)
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS)
+                .build()
+        ;
+    }
+
+    /**
+     * Close pooled connections and forget circuit breaker states. The client will be recreated in case it is needed again.
+     */
+    @Terminator @Restricted(DoNotUse.class)
+    public static synchronized void shutdownClient() {
+        CIRCUIT_BREAKERS.clear();
+        if (client == null) return;
+        try {
+            client.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to close HttpClient", e); // $COVERAGE-IGNORE$
+        } finally {
+            client = null;
+            connectionManager = null;
+        }
+    }
+
+    /**
+     * Statistics of the connection pool shared by all endpoints.
+     *
+     * @return Connections leased, available and pending in total.
+     */
+    public static synchronized @Nonnull PoolStats getConnectionPoolStats() {
+        if (connectionManager == null) return new PoolStats(0, 0, 0, MAX_CONNECTIONS_TOTAL);
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Statistics of the connection pool shared by all endpoints, per remote Jenkins.
+     *
+     * @return Connections leased, available and pending keyed by the route.
+     */
+    public static synchronized @Nonnull Map<String, PoolStats> getConnectionPoolRouteStats() {
+        Map<String, PoolStats> stats = new LinkedHashMap<>();
+        if (connectionManager == null) return stats;
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            stats.put(route.getTargetHost().toURI(), connectionManager.getStats(route));
+        }
+        return stats;
+    }
+
+    // Circuit breakers keyed by Jenkins URL so the state survives endpoint instance recreation
+    private static final ConcurrentMap<String, CircuitBreaker> CIRCUIT_BREAKERS = new ConcurrentHashMap<>();
+
+    /**
+     * Circuit breakers of all Jenkins instances talked to.
+     *
+     * @return Circuit breakers keyed by Jenkins URL.
+     */
+    public static @Nonnull Map<String, CircuitBreaker> getCircuitBreakers() {
+        return new TreeMap<>(CIRCUIT_BREAKERS);
+    }
+
+    /**
+     * Circuit breaker of Jenkins instance.
+     *
+     * @return Circuit breaker or null if the instance was not talked to.
+     */
+    public static @CheckForNull CircuitBreaker getCircuitBreaker(@Nonnull String jenkinsUrl) {
+        return CIRCUIT_BREAKERS.get(jenkinsUrl);
+    }
+
+    private static @Nonnull CircuitBreaker circuitBreakerFor(@Nonnull String jenkinsUrl) {
+        CircuitBreaker breaker = CIRCUIT_BREAKERS.get(jenkinsUrl);
+        if (breaker != null) return breaker;
+
+        breaker = new CircuitBreaker(jenkinsUrl);
+        CircuitBreaker existing = CIRCUIT_BREAKERS.putIfAbsent(jenkinsUrl, breaker);
+        return existing == null ? breaker : existing;
+    }
+
+    // Threads dedicated to asynchronous requests so callers do not need to park their own
+    private static final int ASYNC_THREADS = Integer.getInteger(
+            "com.redhat.jenkins.nodesharing.RestEndpoint.ASYNC_THREADS", MAX_CONNECTIONS_PER_ROUTE
+    );
+    // Requests waiting for a thread, those over the limit fail right away instead of waiting behind unresponsive peers
+    private static final int ASYNC_QUEUE_SIZE = Integer.getInteger(
+            "com.redhat.jenkins.nodesharing.RestEndpoint.ASYNC_QUEUE_SIZE", 100
+    );
+    private static final ExecutorService ASYNC_EXECUTOR = createAsyncExecutor();
+
+    private static @Nonnull ExecutorService createAsyncExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                ASYNC_THREADS, ASYNC_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(ASYNC_QUEUE_SIZE),
+                new NamingThreadFactory(new DaemonThreadFactory(), "RestEndpoint.async")
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return new ContextResettingExecutorService(executor);
+    }
 
+    // Time in ms the crumb (or the fact there is no crumb issuer) is reused for
+    private static final long CRUMB_TTL = Long.getLong("com.redhat.jenkins.nodesharing.RestEndpoint.CRUMB_TTL", 10 * 60 * 1000);
+    private static final String NO_VALID_CRUMB = "No valid crumb";
+
+    private static final String GZIP = "gzip";
+
+    private final @Nonnull String jenkinsUrl;
     private final @Nonnull String endpoint;
     private final @Nonnull String crumbIssuerEndpoint;
     private final @Nonnull UsernamePasswordCredentials creds;
 
+    // Futures of coalesced requests in progress keyed by the request and return type
+    private final @Nonnull ConcurrentMap<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    // Built once first request is sent as the credential does not change for the endpoint
+    private volatile @CheckForNull PreemptiveAuth auth;
+
+    // Other side advertised it accepts gzip encoded requests in the last response.
+    private volatile boolean gzipAccepted = false;
+
+    private final @Nonnull Object crumbLock = new Object();
+    @GuardedBy("crumbLock")
+    private @CheckForNull Header crumbHeader;
+    @GuardedBy("crumbLock")
+    private long crumbTimestamp;
+    // Fetch in progress all the callers needing a new crumb wait for
+    @GuardedBy("crumbLock")
+    private @CheckForNull CompletableFuture<Header> crumbFetch;
+
     public RestEndpoint(@Nonnull String jenkinsUrl, @Nonnull String endpointPath, @Nonnull UsernamePasswordCredentials creds) {
         Objects.requireNonNull(jenkinsUrl);
         Objects.requireNonNull(endpointPath);
         Objects.requireNonNull(creds);
 
+        this.jenkinsUrl = jenkinsUrl;
         this.endpoint = jenkinsUrl + endpointPath;
         this.crumbIssuerEndpoint = jenkinsUrl + "crumbIssuer/api/json";
         this.creds = creds;
@@ -155,6 +382,7 @@ public class RestEndpoint {
      * @param returnType Type the response should be converted at.
      *
      * @throws ActionFailed.CommunicationError When there ware problems executing the request.
+     * @throws ActionFailed.CircuitOpen When the request was not sent as the other side keeps failing.
      * @throws ActionFailed.ProtocolMismatch When there is a problem reading the response.
      * @throws ActionFailed.RequestFailed When status code different from 200 was returned.
      */
@@ -163,9 +391,8 @@ public class RestEndpoint {
             @Nonnull Entity requestEntity,
             @Nonnull Class<T> returnType
     ) throws ActionFailed {
-        method.addHeader(getCrumbHeader());
-        method.setEntity(new WrappingEntity(requestEntity));
-        return _executeRequest(method, new DefaultResponseHandler<>(method, returnType));
+        method.setEntity(new WrappingEntity(requestEntity, gzipAccepted));
+        return executeWithMetrics(method, new DefaultResponseHandler<>(method, returnType));
     }
 
     /**
@@ -177,6 +404,7 @@ public class RestEndpoint {
      *
      * @throws ActionFailed.CommunicationError When there ware problems executing the request.
      * @throws ActionFailed.RequestTimeout When the request timed out.
+     * @throws ActionFailed.CircuitOpen When the request was not sent as the other side keeps failing.
      * @throws ActionFailed.ProtocolMismatch When there is a problem reading the response.
      * @throws ActionFailed.RequestFailed When status code different from 200 was returned.
      */
@@ -185,9 +413,8 @@ public class RestEndpoint {
             @Nonnull Entity requestEntity,
             @Nonnull ResponseHandler<T> handler
     ) throws ActionFailed {
-        method.addHeader(getCrumbHeader());
-        method.setEntity(new WrappingEntity(requestEntity));
-        return _executeRequest(method, handler);
+        method.setEntity(new WrappingEntity(requestEntity, gzipAccepted));
+        return executeWithMetrics(method, handler);
     }
 
     @VisibleForTesting
@@ -195,49 +422,448 @@ public class RestEndpoint {
             @Nonnull HttpEntityEnclosingRequestBase method,
             @Nonnull ResponseHandler<T> handler
     ) throws ActionFailed {
-        method.addHeader(getCrumbHeader());
-        return _executeRequest(method, handler);
+        return executeWithMetrics(method, handler);
+    }
+
+    /**
+     * Execute HttpRequest asynchronously.
+     *
+     * @param method Method and url to be invoked.
+     * @param requestEntity Entity to be sent in request body.
+     * @param returnType Type the response should be converted at.
+     * @return Future completed with the response entity, or exceptionally with {@link ActionFailed} subtype
+     * {@link #executeRequest(HttpEntityEnclosingRequestBase, Entity, Class)} would throw.
+     */
+    public @Nonnull <T extends AbstractEntity> CompletableFuture<T> executeRequestAsync(
+            @Nonnull HttpEntityEnclosingRequestBase method,
+            @Nonnull Entity requestEntity,
+            @Nonnull Class<T> returnType
+    ) {
+        method.setEntity(new WrappingEntity(requestEntity, gzipAccepted));
+        return executeAsync(method, new DefaultResponseHandler<>(method, returnType));
+    }
+
+    /**
+     * Execute HttpRequest asynchronously.
+     *
+     * @param method Method and url to be invoked.
+     * @param requestEntity Entity to be sent in request body.
+     * @param handler Response handler to be used.
+     * @return Future completed with the handler result, or exceptionally with {@link ActionFailed} subtype
+     * {@link #executeRequest(HttpEntityEnclosingRequestBase, Entity, ResponseHandler)} would throw.
+     */
+    public @Nonnull <T> CompletableFuture<T> executeRequestAsync(
+            @Nonnull HttpEntityEnclosingRequestBase method,
+            @Nonnull Entity requestEntity,
+            @Nonnull ResponseHandler<T> handler
+    ) {
+        method.setEntity(new WrappingEntity(requestEntity, gzipAccepted));
+        return executeAsync(method, handler);
+    }
+
+    /**
+     * Execute idempotent HttpRequest, sharing the exchange with identical requests in progress.
+     *
+     * Concurrent requests to the same URL with the same entity and return type are sent only once and all the callers
+     * receive the same result. Not to be used for requests with side effects the other side is expected to perform
+     * for every call.
+     *
+     * @see #executeRequest(HttpEntityEnclosingRequestBase, Entity, Class)
+     */
+    public <T extends AbstractEntity> T executeCoalescedRequest(
+            @Nonnull HttpEntityEnclosingRequestBase method,
+            @Nonnull Entity requestEntity,
+            @Nonnull Class<T> returnType
+    ) throws ActionFailed {
+        String key = getCoalescingKey(method, requestEntity, returnType);
+        CompletableFuture<T> leader = new CompletableFuture<>();
+        CompletableFuture<T> existing = joinInFlight(key, leader);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException ex) {
+                throw rethrow(ex.getCause());
+            }
+        }
+
+        try {
+            T out = executeRequest(method, requestEntity, returnType);
+            inFlight.remove(key, leader);
+            leader.complete(out);
+            return out;
+        } catch (RuntimeException | Error ex) {
+            inFlight.remove(key, leader);
+            leader.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Execute idempotent HttpRequest asynchronously, sharing the exchange with identical requests in progress.
+     *
+     * @see #executeCoalescedRequest(HttpEntityEnclosingRequestBase, Entity, Class)
+     * @see #executeRequestAsync(HttpEntityEnclosingRequestBase, Entity, Class)
+     */
+    public @Nonnull <T extends AbstractEntity> CompletableFuture<T> executeCoalescedRequestAsync(
+            @Nonnull HttpEntityEnclosingRequestBase method,
+            @Nonnull Entity requestEntity,
+            @Nonnull Class<T> returnType
+    ) {
+        final String key = getCoalescingKey(method, requestEntity, returnType);
+        final CompletableFuture<T> leader = new CompletableFuture<>();
+        CompletableFuture<T> existing = joinInFlight(key, leader);
+        if (existing != null) return dependent(existing);
+
+        executeRequestAsync(method, requestEntity, returnType).whenComplete(new BiConsumer<T, Throwable>() {
+            @Override public void accept(T out, Throwable ex) {
+                inFlight.remove(key, leader);
+                if (ex == null) {
+                    leader.complete(out);
+                } else {
+                    leader.completeExceptionally(ex);
+                }
+            }
+        });
+        return dependent(leader);
+    }
+
+    private static @Nonnull String getCoalescingKey(
+            @Nonnull HttpRequestBase method, @Nonnull Entity requestEntity, @Nonnull Class<?> returnType
+    ) {
+        return method.getMethod() + ' ' + method.getURI() + ' ' + returnType.getName() + ' ' + requestEntity;
+    }
+
+    // The return type is part of the key so the future is of the expected type
+    @SuppressWarnings("unchecked")
+    private @CheckForNull <T> CompletableFuture<T> joinInFlight(@Nonnull String key, @Nonnull CompletableFuture<T> leader) {
+        CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(key, leader);
+        if (existing != null) {
+            LOGGER.fine("Coalescing request to " + key);
+        }
+        return existing;
+    }
+
+    // Prevent callers from completing the future other callers share
+    private static @Nonnull <T> CompletableFuture<T> dependent(@Nonnull CompletableFuture<T> shared) {
+        final CompletableFuture<T> out = new CompletableFuture<>();
+        shared.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override public void accept(T value, Throwable ex) {
+                if (ex == null) {
+                    out.complete(value);
+                } else {
+                    out.completeExceptionally(ex instanceof CompletionException ? ex.getCause() : ex);
+                }
+            }
+        });
+        return out;
+    }
+
+    private static @Nonnull RuntimeException rethrow(@Nonnull Throwable ex) {
+        if (ex instanceof RuntimeException) throw (RuntimeException) ex;
+        if (ex instanceof Error) throw (Error) ex;
+        throw new ActionFailed.CommunicationError(ex); // $COVERAGE-IGNORE$
+    }
+
+    private @Nonnull <T> CompletableFuture<T> executeAsync(
+            @Nonnull final HttpRequestBase method, @Nonnull final ResponseHandler<T> handler
+    ) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            ASYNC_EXECUTOR.execute(new Runnable() {
+                @Override public void run() {
+                    // Complete with the original exception so callers can distinguish ActionFailed subtypes
+                    try {
+                        future.complete(executeWithMetrics(method, handler));
+                    } catch (Throwable ex) {
+                        future.completeExceptionally(ex);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(new ActionFailed.CommunicationError("Too many asynchronous requests pending: " + method, ex));
+        }
+        return future;
+    }
+
+    /**
+     * Circuit breaker of the Jenkins this endpoint belongs to.
+     */
+    public @Nonnull CircuitBreaker getCircuitBreaker() {
+        return circuitBreakerFor(jenkinsUrl);
+    }
+
+    // Record latency and outcome of the call including the crumb and circuit breaker handling
+    private <T> T executeWithMetrics(@Nonnull HttpRequestBase method, @Nonnull ResponseHandler<T> handler) {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            return executeWithCircuitBreaker(method, handler);
+        } catch (RuntimeException | Error ex) {
+            failure = ex;
+            throw ex;
+        } finally {
+            RestMetrics.record(
+                    RestMetrics.Direction.OUTGOING, getOperationName(method), jenkinsUrl,
+                    System.nanoTime() - start, RestMetrics.outcome(failure)
+            );
+        }
+    }
+
+    private static @Nonnull String getOperationName(@Nonnull HttpRequestBase method) {
+        String path = method.getURI().getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    // Fail fast when the other side is known not to respond, or track whether it responded otherwise
+    private <T> T executeWithCircuitBreaker(@Nonnull HttpRequestBase method, @Nonnull ResponseHandler<T> handler) {
+        CircuitBreaker breaker = getCircuitBreaker();
+        boolean probe = breaker.acquire();
+        try {
+            T out = executeWithCrumb(method, handler);
+            breaker.succeeded();
+            return out;
+        } catch (ActionFailed.RequestFailed ex) {
+            breaker.succeeded(); // Failing with status code is still a response
+            throw ex;
+        } catch (ActionFailed.CommunicationError ex) {
+            breaker.failed(probe, ex);
+            throw ex;
+        } catch (RuntimeException | Error ex) {
+            breaker.succeeded(); // Response was not understood, but there was one
+            throw ex;
+        }
+    }
+
+    // Crumb can expire or be invalidated by the other side restart, refetch and retry once in such case
+    private <T> T executeWithCrumb(@Nonnull HttpRequestBase method, @Nonnull ResponseHandler<T> handler) {
+        String operation = getOperationName(method);
+        Header crumb = getCrumbHeader();
+        method.setHeader(crumb);
+        try {
+            return _executeRequest(operation, method, handler);
+        } catch (ActionFailed.RequestFailed ex) {
+            if (ex.getStatusCode() != 403 || !ex.getMessage().contains(NO_VALID_CRUMB)) throw ex;
+
+            LOGGER.fine("Crumb rejected by " + crumbIssuerEndpoint + ", retrying with a new one");
+            invalidateCrumb(crumb);
+            method.reset();
+            method.removeHeaders(crumb.getName());
+            method.setHeader(getCrumbHeader());
+            return _executeRequest(operation, method, handler);
+        }
     }
 
     @CheckForNull
-    private <T> T _executeRequest(@Nonnull HttpRequestBase method, @Nonnull ResponseHandler<T> handler) {
-        method.setConfig(REQUEST_CONFIG);
+    private <T> T _executeRequest(
+            @Nonnull final String operation, @Nonnull HttpRequestBase method, @Nonnull final ResponseHandler<T> handler
+    ) {
+        final int timeout = TIMEOUTS.get(jenkinsUrl, operation);
+        method.setConfig(getRequestConfig(timeout));
+        final long start = System.nanoTime();
+
+        // Learn whether the other side is able to receive compressed requests and how long it takes to respond
+        ResponseHandler<T> negotiatingHandler = new ResponseHandler<T>() {
+            @Override public T handleResponse(HttpResponse response) throws IOException {
+                TIMEOUTS.record(jenkinsUrl, operation, System.nanoTime() - start);
+                // Stop compressing once the other side stops advertising it or rejects the request, it might have been
+                // replaced by a version that does not support it
+                int status = response.getStatusLine().getStatusCode();
+                gzipAccepted = status != HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE
+                        && status != HttpServletResponse.SC_BAD_REQUEST
+                        && acceptsGzip(response.getFirstHeader("Accept-Encoding"))
+                ;
+                return handler.handleResponse(response);
+            }
+        };
 
-        CloseableHttpClient client = HttpClients.createSystem();
+        // The response entity is consumed by the client so the connection is returned to the pool
         try {
-            return client.execute(method, handler, getAuthenticatingContext(method));
+            return getClient().execute(method, negotiatingHandler, getAuthenticatingContext(method));
         } catch (SocketTimeoutException e) {
+            TIMEOUTS.recordTimeout(jenkinsUrl, operation, timeout);
             throw new ActionFailed.RequestTimeout("Failed executing REST call: " + method, e);
         } catch (IOException e) {
             throw new ActionFailed.CommunicationError("Failed executing REST call: " + method, e);
-        } finally {
-            try {
-                client.close();
-            } catch (IOException e) {
-                LOGGER.log(Level.WARNING, "Unable to close HttpClient", e); // $COVERAGE-IGNORE$
+        }
+    }
+
+    private static boolean acceptsGzip(@CheckForNull Header header) {
+        return header != null && acceptsGzip(header.getValue());
+    }
+
+    /**
+     * Determine if gzip is acceptable per Accept-Encoding header value, honoring the quality values.
+     */
+    @VisibleForTesting
+    /*package*/ static boolean acceptsGzip(@CheckForNull String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+
+        boolean wildcard = false;
+        for (String element : acceptEncoding.split(",")) {
+            String[] params = element.split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ENGLISH);
+            boolean accepted = getQuality(params) > 0;
+            if (GZIP.equals(coding) || "x-gzip".equals(coding)) return accepted;
+            if ("*".equals(coding)) {
+                wildcard = accepted;
             }
         }
+        return wildcard;
+    }
+
+    // Quality value of Accept-Encoding element, its parameters following the coding
+    private static double getQuality(@Nonnull String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            int eq = param.indexOf('=');
+            if (eq > 0 && "q".equalsIgnoreCase(param.substring(0, eq).trim())) {
+                try {
+                    return Double.parseDouble(param.substring(eq + 1).trim());
+                } catch (NumberFormatException e) {
+                    return 0; // Malformed, do not risk it
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Read entity sent by the other side.
+     *
+     * To be used by the endpoint implementations so compressed requests are understood.
+     */
+    public static @Nonnull <T> T readEntity(
+            @Nonnull HttpServletRequest req, @Nonnull Class<T> type
+    ) throws IOException, JsonParseException {
+        InputStream is = req.getInputStream();
+        if (GZIP.equalsIgnoreCase(req.getHeader("Content-Encoding"))) {
+            is = new GZIPInputStream(is);
+        }
+        return Entity.fromInputStream(is, type);
+    }
+
+    /**
+     * Write entity as a response for the other side.
+     *
+     * To be used by the endpoint implementations so the response is compressed if the other side supports that. The
+     * response also advertise this side accepts compressed requests (RFC 7694) so the client can start sending them.
+     */
+    public static void writeEntity(
+            @Nonnull HttpServletRequest req, @Nonnull HttpServletResponse rsp, @Nonnull Entity entity
+    ) throws IOException {
+        rsp.setHeader("Accept-Encoding", GZIP);
+        if (!acceptsGzip(req.getHeader("Accept-Encoding"))) {
+            entity.toOutputStream(rsp.getOutputStream());
+            return;
+        }
+
+        rsp.setHeader("Content-Encoding", GZIP);
+        GZIPOutputStream out = new GZIPOutputStream(rsp.getOutputStream());
+        entity.toOutputStream(out);
+        out.finish();
+    }
+
+    /**
+     * Determine whether the endpoint authenticates using given credential.
+     *
+     * @return false if the endpoint needs to be recreated to use the credential.
+     */
+    public boolean isAuthenticatedBy(@Nonnull UsernamePasswordCredentials creds) {
+        return this.creds == creds || (
+                this.creds.getUsername().equals(creds.getUsername()) && this.creds.getPassword().equals(creds.getPassword())
+        );
     }
 
     // https://hc.apache.org/httpcomponents-client-ga/tutorial/html/authentication.html#d5e717
     private @Nonnull HttpClientContext getAuthenticatingContext(@Nonnull HttpRequestBase method) {
-        AuthCache authCache = new BasicAuthCache();
-        BasicScheme basicAuth = new BasicScheme();
-        authCache.put(URIUtils.extractHost(method.getURI()), basicAuth);
-
-        CredentialsProvider provider = new BasicCredentialsProvider();
-        provider.setCredentials(AuthScope.ANY, new org.apache.http.auth.UsernamePasswordCredentials(
-                creds.getUsername(), creds.getPassword().getPlainText()
-        ));
+        PreemptiveAuth auth = this.auth;
+        if (auth == null) {
+            // Racing threads might build it more than once, but they would build the same thing
+            this.auth = auth = new PreemptiveAuth(method, creds);
+        }
+
+        // Context carries the state of particular execution so it can not be shared, the auth data can
         HttpClientContext context = HttpClientContext.create();
-        context.setCredentialsProvider(provider);
-        context.setAuthCache(authCache);
+        context.setCredentialsProvider(auth.provider);
+        context.setAuthCache(auth.cache);
         return context;
     }
 
-    private Header getCrumbHeader() {
+    // Thread-safe auth data reused by all the calls of the endpoint
+    private static final class PreemptiveAuth {
+        private final @Nonnull CredentialsProvider provider;
+        private final @Nonnull AuthCache cache;
+
+        private PreemptiveAuth(@Nonnull HttpRequestBase method, @Nonnull UsernamePasswordCredentials creds) {
+            // All requests of the endpoint target the same host
+            cache = new BasicAuthCache();
+            cache.put(URIUtils.extractHost(method.getURI()), new BasicScheme());
+
+            provider = new BasicCredentialsProvider();
+            provider.setCredentials(AuthScope.ANY, new org.apache.http.auth.UsernamePasswordCredentials(
+                    creds.getUsername(), creds.getPassword().getPlainText()
+            ));
+        }
+    }
+
+    // Single thread fetches the crumb outside of the lock so the others do not queue up behind it when the other side
+    // does not respond, but wait for the same fetch and fail together
+    private @Nonnull Header getCrumbHeader() {
+        CompletableFuture<Header> fetch;
+        boolean leader = false;
+        synchronized (crumbLock) {
+            if (crumbHeader != null && System.currentTimeMillis() - crumbTimestamp < CRUMB_TTL) {
+                return crumbHeader;
+            }
+
+            fetch = crumbFetch;
+            if (fetch == null) {
+                crumbFetch = fetch = new CompletableFuture<>();
+                leader = true;
+            }
+        }
+
+        if (leader) return fetchSharedCrumbHeader(fetch);
+        try {
+            return fetch.join();
+        } catch (CompletionException ex) {
+            throw rethrow(ex.getCause());
+        }
+    }
+
+    private @Nonnull Header fetchSharedCrumbHeader(@Nonnull CompletableFuture<Header> fetch) {
+        Header header;
+        try {
+            header = fetchCrumbHeader();
+        } catch (RuntimeException | Error ex) {
+            synchronized (crumbLock) {
+                crumbFetch = null;
+            }
+            fetch.completeExceptionally(ex);
+            throw ex;
+        }
+
+        synchronized (crumbLock) {
+            crumbHeader = header;
+            crumbTimestamp = System.currentTimeMillis();
+            crumbFetch = null;
+        }
+        fetch.complete(header);
+        return header;
+    }
+
+    private void invalidateCrumb(@Nonnull Header stale) {
+        synchronized (crumbLock) {
+            // Other thread might have fetched a new one already
+            if (crumbHeader == stale) {
+                crumbHeader = null;
+            }
+        }
+    }
+
+    private @Nonnull Header fetchCrumbHeader() {
         final HttpGet method = new HttpGet(crumbIssuerEndpoint);
-        CrumbResponse crumbResponse = _executeRequest(method, new AbstractResponseHandler<CrumbResponse>(method) {
+        CrumbResponse crumbResponse = _executeRequest("crumbIssuer", method, new AbstractResponseHandler<CrumbResponse>(method) {
             private final List<Integer> ACCEPTED_CODES = Arrays.asList(200, 404);
 
             @Override
@@ -338,21 +964,34 @@ public class RestEndpoint {
     private static final class WrappingEntity extends AbstractHttpEntity {
 
         private final @Nonnull Entity entity;
+        private final boolean gzip;
 
-        private WrappingEntity(@Nonnull Entity entity) {
+        private WrappingEntity(@Nonnull Entity entity, boolean gzip) {
             this.entity = entity;
+            this.gzip = gzip;
+            if (gzip) {
+                setContentEncoding(GZIP);
+            }
         }
 
+        // Entities are immutable so they can be written repeatedly
         @Override public boolean isRepeatable() {
-            return false;
+            return true;
         }
 
         @Override public long getContentLength() {
             return -1;
         }
 
-        @Override public void writeTo(OutputStream outstream) {
-            entity.toOutputStream(outstream);
+        @Override public void writeTo(OutputStream outstream) throws IOException {
+            if (!gzip) {
+                entity.toOutputStream(outstream);
+                return;
+            }
+
+            GZIPOutputStream out = new GZIPOutputStream(outstream);
+            entity.toOutputStream(out);
+            out.finish();
         }
 
         // We should not need this as presumably this is used for receiving entities only
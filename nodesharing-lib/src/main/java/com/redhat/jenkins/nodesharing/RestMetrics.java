@@ -0,0 +1,338 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.redhat.jenkins.nodesharing;
+
+import com.google.gson.stream.JsonWriter;
+import org.apache.http.pool.PoolStats;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.Interceptor;
+import org.kohsuke.stapler.interceptor.InterceptorAnnotation;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latencies and outcomes of REST calls, both sent and received.
+ *
+ * Outgoing calls are recorded by {@link RestEndpoint}, incoming ones by endpoint methods annotated with {@link Measured}.
+ * Calls are tracked per operation and the URL of the Jenkins on the other side. Outcome is either {@value #OK}, simple name of the
+ * exception thrown (typically {@link ActionFailed} subtype), or {@code status_NNN} for incoming calls answered with
+ * status code other than 200.
+ */
+public final class RestMetrics {
+
+    public static final String OK = "ok";
+
+    // Request attribute identifying the other side of incoming call
+    private static final String REMOTE_ATTRIBUTE = RestMetrics.class.getName() + ".remote";
+    private static final String UNKNOWN_REMOTE = "unknown";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_LABELS = {"p50", "p90", "p99", "p999"};
+
+    private static final ConcurrentMap<String, Operation> OPERATIONS = new ConcurrentHashMap<>();
+
+    private RestMetrics() {}
+
+    public enum Direction {
+        OUTGOING, INCOMING;
+
+        private @Nonnull String label() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    /**
+     * Metrics of single operation with single remote Jenkins.
+     */
+    public static final class Operation {
+        private final @Nonnull Direction direction;
+        private final @Nonnull String name;
+        private final @Nonnull String remote;
+        private final @Nonnull LatencyHistogram latency = new LatencyHistogram();
+        private final @Nonnull ConcurrentMap<String, AtomicLong> outcomes = new ConcurrentHashMap<>();
+
+        private Operation(@Nonnull Direction direction, @Nonnull String name, @Nonnull String remote) {
+            this.direction = direction;
+            this.name = name;
+            this.remote = remote;
+        }
+
+        public @Nonnull Direction getDirection() {
+            return direction;
+        }
+
+        public @Nonnull String getName() {
+            return name;
+        }
+
+        /**
+         * @return URL of the other side as configured, or {@value #UNKNOWN_REMOTE} for incoming calls not identified.
+         */
+        public @Nonnull String getRemote() {
+            return remote;
+        }
+
+        public @Nonnull LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return Number of calls per outcome.
+         */
+        public @Nonnull Map<String, Long> getOutcomes() {
+            Map<String, Long> out = new TreeMap<>();
+            for (Map.Entry<String, AtomicLong> e : outcomes.entrySet()) {
+                out.put(e.getKey(), e.getValue().get());
+            }
+            return out;
+        }
+
+        private void record(long duration, @Nonnull String outcome) {
+            latency.record(duration);
+            AtomicLong counter = outcomes.get(outcome);
+            if (counter == null) {
+                AtomicLong created = new AtomicLong();
+                counter = outcomes.putIfAbsent(outcome, created);
+                if (counter == null) {
+                    counter = created;
+                }
+            }
+            counter.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record a call.
+     *
+     * @param duration Duration in nanoseconds.
+     */
+    public static void record(
+            @Nonnull Direction direction, @Nonnull String operation, @Nonnull String remote, long duration, @Nonnull String outcome
+    ) {
+        String key = direction + " " + operation + " " + remote;
+        Operation op = OPERATIONS.get(key);
+        if (op == null) {
+            Operation created = new Operation(direction, operation, remote);
+            op = OPERATIONS.putIfAbsent(key, created);
+            if (op == null) {
+                op = created;
+            }
+        }
+        op.record(duration, outcome);
+    }
+
+    /**
+     * @return Outcome identifying the failure.
+     */
+    public static @Nonnull String outcome(@CheckForNull Throwable failure) {
+        return failure == null ? OK : failure.getClass().getSimpleName();
+    }
+
+    /**
+     * @return All operations recorded so far ordered by direction, name and remote.
+     */
+    public static @Nonnull List<Operation> getOperations() {
+        List<Operation> ops = new ArrayList<>(OPERATIONS.values());
+        Collections.sort(ops, new Comparator<Operation>() {
+            @Override public int compare(Operation o1, Operation o2) {
+                int diff = o1.direction.compareTo(o2.direction);
+                if (diff != 0) return diff;
+                diff = o1.name.compareTo(o2.name);
+                if (diff != 0) return diff;
+                return o1.remote.compareTo(o2.remote);
+            }
+        });
+        return ops;
+    }
+
+    /*package*/ static void clear() {
+        OPERATIONS.clear();
+    }
+
+    /**
+     * Attribute incoming call to the other side.
+     *
+     * To be used by the endpoint implementations once the caller is matched against the configuration. Calls not
+     * identified this way are recorded with {@value #UNKNOWN_REMOTE} remote, so the set of remotes tracked is not
+     * controlled by the callers.
+     *
+     * @param url URL of the other side as configured, the same outgoing calls to it are recorded with.
+     */
+    public static void identifyRemote(@Nonnull HttpServletRequest req, @Nonnull String url) {
+        req.setAttribute(REMOTE_ATTRIBUTE, url);
+    }
+
+    /**
+     * Write the metrics as fields of JSON object.
+     *
+     * @param pool Statistics of pooled connections.
+     */
+    /*package*/ static void writeJson(@Nonnull JsonWriter out, @Nonnull PoolStats pool) throws IOException {
+        out.name("operations").beginArray();
+        for (Operation op : getOperations()) {
+            LatencyHistogram latency = op.getLatency();
+            out.beginObject();
+            out.name("direction").value(op.getDirection().label());
+            out.name("operation").value(op.getName());
+            out.name("remote").value(op.getRemote());
+            out.name("count").value(latency.getCount());
+            out.name("latencyMicros").beginObject();
+            out.name("sum").value(latency.getSum());
+            out.name("max").value(latency.getMax());
+            for (int i = 0; i < QUANTILES.length; i++) {
+                out.name(QUANTILE_LABELS[i]).value(latency.getValueAtQuantile(QUANTILES[i]));
+            }
+            out.endObject();
+            out.name("outcomes").beginObject();
+            for (Map.Entry<String, Long> e : op.getOutcomes().entrySet()) {
+                out.name(e.getKey()).value(e.getValue());
+            }
+            out.endObject();
+            out.endObject();
+        }
+        out.endArray();
+        out.name("connections").beginObject();
+        out.name("leased").value(pool.getLeased());
+        out.name("available").value(pool.getAvailable());
+        out.name("pending").value(pool.getPending());
+        out.name("max").value(pool.getMax());
+        out.endObject();
+    }
+
+    /**
+     * Write the metrics in Prometheus text format.
+     *
+     * @param pool Statistics of pooled connections.
+     */
+    /*package*/ static void writePrometheus(@Nonnull PrintWriter out, @Nonnull PoolStats pool) {
+        List<Operation> ops = getOperations();
+
+        out.println("# HELP nodesharing_rest_duration_seconds Duration of node sharing REST calls.");
+        out.println("# TYPE nodesharing_rest_duration_seconds summary");
+        for (Operation op : ops) {
+            LatencyHistogram latency = op.getLatency();
+            String labels = labels(op);
+            for (double q : QUANTILES) {
+                out.println("nodesharing_rest_duration_seconds{" + labels + ",quantile=\"" + q + "\"} " + seconds(latency.getValueAtQuantile(q)));
+            }
+            out.println("nodesharing_rest_duration_seconds_sum{" + labels + "} " + seconds(latency.getSum()));
+            out.println("nodesharing_rest_duration_seconds_count{" + labels + "} " + latency.getCount());
+        }
+
+        out.println("# HELP nodesharing_rest_calls_total Node sharing REST calls by outcome.");
+        out.println("# TYPE nodesharing_rest_calls_total counter");
+        for (Operation op : ops) {
+            String labels = labels(op);
+            for (Map.Entry<String, Long> e : op.getOutcomes().entrySet()) {
+                out.println("nodesharing_rest_calls_total{" + labels + ",outcome=\"" + escape(e.getKey()) + "\"} " + e.getValue());
+            }
+        }
+
+        out.println("# HELP nodesharing_rest_connections Pooled connections to other node sharing Jenkinses.");
+        out.println("# TYPE nodesharing_rest_connections gauge");
+        out.println("nodesharing_rest_connections{state=\"leased\"} " + pool.getLeased());
+        out.println("nodesharing_rest_connections{state=\"available\"} " + pool.getAvailable());
+        out.println("nodesharing_rest_connections{state=\"pending\"} " + pool.getPending());
+        out.println("nodesharing_rest_connections{state=\"max\"} " + pool.getMax());
+    }
+
+    private static @Nonnull String labels(@Nonnull Operation op) {
+        return "direction=\"" + op.getDirection().label() + "\",operation=\"" + escape(op.getName()) + "\",remote=\"" + escape(op.getRemote()) + "\"";
+    }
+
+    private static @Nonnull String escape(@Nonnull String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static double seconds(long micros) {
+        return micros / 1000000D;
+    }
+
+    /**
+     * Record latency and outcome of incoming REST call.
+     *
+     * The other side is identified by {@link #identifyRemote(HttpServletRequest, String)}.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    @InterceptorAnnotation(Measured.Processor.class)
+    public @interface Measured {
+        /**
+         * @return Operation name.
+         */
+        String value();
+
+        final class Processor extends Interceptor {
+            @Override
+            public Object invoke(
+                    StaplerRequest request, StaplerResponse response, Object instance, Object[] arguments
+            ) throws IllegalAccessException, InvocationTargetException, ServletException {
+                long start = System.nanoTime();
+                String outcome = OK;
+                try {
+                    Object ret = target.invoke(request, response, instance, arguments);
+                    int status = response.getStatus();
+                    if (status != 200) {
+                        outcome = "status_" + status;
+                    }
+                    return ret;
+                } catch (InvocationTargetException ex) {
+                    outcome = outcome(ex.getCause());
+                    throw ex;
+                } catch (IllegalAccessException | ServletException | RuntimeException | Error ex) {
+                    outcome = outcome(ex);
+                    throw ex;
+                } finally {
+                    Object remote = request.getAttribute(REMOTE_ATTRIBUTE);
+                    record(
+                            Direction.INCOMING, target.getAnnotation(Measured.class).value(),
+                            remote == null ? UNKNOWN_REMOTE : remote.toString(),
+                            System.nanoTime() - start, outcome
+                    );
+                }
+            }
+        }
+    }
+}
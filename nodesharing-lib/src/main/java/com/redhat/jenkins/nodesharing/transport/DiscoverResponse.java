@@ -61,6 +61,17 @@ public class DiscoverResponse extends AbstractEntity {
         this.diagnosis = diagnosis;
     }
 
+    /*package*/ DiscoverResponse(
+            @Nonnull String configRepoUrl,
+            @Nonnull String version,
+            @Nonnull Set<String> labels,
+            @Nonnull String diagnosis
+    ) {
+        super(configRepoUrl, version);
+        this.labels = Collections.unmodifiableSet(labels);
+        this.diagnosis = diagnosis;
+    }
+
     public @Nonnull Set<String> getLabels() {
         return labels;
     }
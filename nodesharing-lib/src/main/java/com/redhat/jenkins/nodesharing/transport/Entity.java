@@ -24,27 +24,32 @@
 package com.redhat.jenkins.nodesharing.transport;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
 
 import javax.annotation.Nonnull;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
 
 /**
  * JSON sent or consumed payload.
  *
+ * Entities are (de)serialized by streaming type adapters registered in {@link EntityTypeAdapters}, so no intermediate
+ * string or byte array is created when reading from or writing to a stream.
+ *
  * @author ogondza.
  */
 public abstract class Entity {
     protected static final Charset TRANSPORT_CHARSET = Charset.forName("UTF-8");
-    private static final Gson GSON = new Gson();
+    private static final Gson GSON = EntityTypeAdapters.register(new GsonBuilder()).create();
 
     /**
      * Read entity from stream.
@@ -54,7 +59,7 @@ public abstract class Entity {
      * @throws JsonSyntaxException if json is not a valid representation for an object of type.
      */
     public static @Nonnull <T> T fromInputStream(@Nonnull InputStream inputStream, @Nonnull Class<T> type) throws JsonSyntaxException, JsonIOException {
-        T out = GSON.fromJson(new InputStreamReader(inputStream, TRANSPORT_CHARSET), type);
+        T out = GSON.fromJson(new BufferedReader(new InputStreamReader(inputStream, TRANSPORT_CHARSET)), type);
         if (out == null) throw new JsonSyntaxException("There was nothing in the stream");
         return out;
     }
@@ -62,44 +67,39 @@ public abstract class Entity {
     /**
      * Read entity from string.
      *
-     * This method delegates to {@link #fromInputStream(InputStream, Class)} so subclasses must only override that one if needed.
-     *
-     * @return The entity created. Returns {@code null} if {@code json} is at EOF.
+     * @return The entity created.
      * @throws JsonIOException if there was a problem reading from the Reader.
      * @throws JsonSyntaxException if json is not a valid representation for an object of type.
      */
     public static @Nonnull <T> T fromString(@Nonnull String in, @Nonnull Class<T> type) throws JsonSyntaxException, JsonIOException {
-        ByteArrayInputStream bais = new ByteArrayInputStream(in.getBytes(TRANSPORT_CHARSET));
-        return fromInputStream(bais, type);
+        T out = GSON.fromJson(in, type);
+        if (out == null) throw new JsonSyntaxException("There was nothing in the string");
+        return out;
     }
 
     /**
      * Write entity to {@link OutputStream}.
      *
+     * The stream is flushed but not closed.
+     *
      * @throws JsonIOException if there was a problem writing to the writer.
      */
     public void toOutputStream(@Nonnull OutputStream out) throws JsonIOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, TRANSPORT_CHARSET));
+        GSON.toJson(this, getClass(), writer);
         try {
-            GSON.toJson(this, new PrintStream(out, false, TRANSPORT_CHARSET.name()));
-        } catch (UnsupportedEncodingException e) {
-            throw new AssertionError(e); // $COVERAGE-IGNORE$
+            writer.flush();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
         }
     }
 
     /**
      * Write entity to string.
      *
-     * This method delegates to {@link #toOutputStream(OutputStream)} so subclasses must only override that one if needed.
-     *
      * @throws JsonIOException if there was a problem writing to the writer.
      */
     public @Nonnull String toString() throws JsonIOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        toOutputStream(baos);
-        try {
-            return baos.toString(TRANSPORT_CHARSET.name());
-        } catch (UnsupportedEncodingException e) {
-            throw new AssertionError(e); // $COVERAGE-IGNORE$
-        }
+        return GSON.toJson(this, getClass());
     }
 }
@@ -0,0 +1,393 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.redhat.jenkins.nodesharing.transport;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.redhat.jenkins.nodesharing.transport.ExecutorEntity.Fingerprint;
+import com.redhat.jenkins.nodesharing.transport.ReportWorkloadRequest.Workload;
+import com.redhat.jenkins.nodesharing.transport.ReportWorkloadRequest.Workload.WorkloadItem;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streaming Gson adapters for transport entities.
+ *
+ * Reflective Gson binding introspects the entity class on every (de)serialization and instantiates entities bypassing
+ * their constructors. These adapters stream the fields directly and construct entities through their constructors
+ * instead. The wire format is identical to the reflective one: fields are named after the Java fields, {@code null}
+ * values are omitted and enums are written by name. Unknown fields are skipped so newer peers can add fields.
+ */
+final class EntityTypeAdapters {
+
+    private EntityTypeAdapters() {}
+
+    /*package*/ static @Nonnull GsonBuilder register(@Nonnull GsonBuilder builder) {
+        return builder
+                .registerTypeAdapter(CrumbResponse.class, new EntityAdapter<CrumbResponse>() {
+                    @Override void writeFields(JsonWriter out, CrumbResponse value) throws IOException {
+                        out.name("crumb").value(value.getCrumb());
+                        out.name("crumbRequestField").value(value.getCrumbRequestField());
+                    }
+                    @Override CrumbResponse create(Fields f) {
+                        return new CrumbResponse(f.required(f.crumb, "crumb"), f.required(f.crumbRequestField, "crumbRequestField"));
+                    }
+                })
+                .registerTypeAdapter(DiscoverRequest.class, new EntityAdapter<DiscoverRequest>() {
+                    @Override void writeFields(JsonWriter out, DiscoverRequest value) throws IOException {
+                        writeExecutorEntity(out, value);
+                    }
+                    @Override DiscoverRequest create(Fields f) {
+                        return new DiscoverRequest(f.fingerprint());
+                    }
+                })
+                .registerTypeAdapter(DiscoverResponse.class, new EntityAdapter<DiscoverResponse>() {
+                    @Override void writeFields(JsonWriter out, DiscoverResponse value) throws IOException {
+                        writeAbstractEntity(out, value);
+                        out.name("diagnosis").value(value.getDiagnosis());
+                        out.name("labels");
+                        writeStrings(out, value.getLabels());
+                    }
+                    @Override DiscoverResponse create(Fields f) {
+                        return new DiscoverResponse(
+                                f.required(f.configRepoUrl, "configRepoUrl"), f.required(f.version, "version"),
+                                f.required(f.labels, "labels"), f.required(f.diagnosis, "diagnosis")
+                        );
+                    }
+                })
+                .registerTypeAdapter(NodeStatusRequest.class, new EntityAdapter<NodeStatusRequest>() {
+                    @Override void writeFields(JsonWriter out, NodeStatusRequest value) throws IOException {
+                        writeAbstractEntity(out, value);
+                        out.name("nodeName").value(value.getNodeName());
+                    }
+                    @Override NodeStatusRequest create(Fields f) {
+                        // Node name is not required, such request is answered with NOT_FOUND
+                        return new NodeStatusRequest(
+                                f.required(f.configRepoUrl, "configRepoUrl"), f.required(f.version, "version"), f.nodeName
+                        );
+                    }
+                })
+                .registerTypeAdapter(NodeStatusResponse.class, new EntityAdapter<NodeStatusResponse>() {
+                    @Override void writeFields(JsonWriter out, NodeStatusResponse value) throws IOException {
+                        writeExecutorEntity(out, value);
+                        out.name("nodeName").value(value.getNodeName());
+                        out.name("status").value(value.getStatus().name());
+                    }
+                    @Override NodeStatusResponse create(Fields f) {
+                        String status = f.required(f.status, "status");
+                        NodeStatusResponse.Status s;
+                        try {
+                            s = NodeStatusResponse.Status.valueOf(status);
+                        } catch (IllegalArgumentException ex) {
+                            // Status added by newer peer
+                            s = NodeStatusResponse.Status.INVALID;
+                        }
+                        return new NodeStatusResponse(f.fingerprint(), f.nodeName, s);
+                    }
+                })
+                .registerTypeAdapter(RefreshConfigRequest.class, new EntityAdapter<RefreshConfigRequest>() {
+                    @Override void writeFields(JsonWriter out, RefreshConfigRequest value) throws IOException {
+                        writeAbstractEntity(out, value);
+                        out.name("revision").value(value.getRevision());
+                    }
+                    @Override RefreshConfigRequest create(Fields f) {
+                        return new RefreshConfigRequest(
+                                f.required(f.configRepoUrl, "configRepoUrl"), f.required(f.version, "version"),
+                                f.required(f.revision, "revision")
+                        );
+                    }
+                })
+                .registerTypeAdapter(ReportUsageRequest.class, new EntityAdapter<ReportUsageRequest>() {
+                    @Override void writeFields(JsonWriter out, ReportUsageRequest value) throws IOException {
+                        writeAbstractEntity(out, value);
+                    }
+                    @Override ReportUsageRequest create(Fields f) {
+                        return new ReportUsageRequest(f.required(f.configRepoUrl, "configRepoUrl"), f.required(f.version, "version"));
+                    }
+                })
+                .registerTypeAdapter(ReportUsageResponse.class, new EntityAdapter<ReportUsageResponse>() {
+                    @Override void writeFields(JsonWriter out, ReportUsageResponse value) throws IOException {
+                        writeExecutorEntity(out, value);
+                        out.name("usedNodes");
+                        writeStrings(out, value.getUsedNodes());
+                    }
+                    @Override ReportUsageResponse create(Fields f) {
+                        return new ReportUsageResponse(f.fingerprint(), f.required(f.usedNodes, "usedNodes"));
+                    }
+                })
+                .registerTypeAdapter(ReportWorkloadRequest.class, new EntityAdapter<ReportWorkloadRequest>() {
+                    @Override void writeFields(JsonWriter out, ReportWorkloadRequest value) throws IOException {
+                        writeExecutorEntity(out, value);
+                        out.name("workload").beginObject().name("items").beginArray();
+                        for (WorkloadItem item : value.getWorkload().getItems()) {
+                            out.beginObject();
+                            out.name("id").value(item.getId());
+                            out.name("name").value(item.getName());
+                            out.name("labelExpr").value(item.getLabelExpr());
+                            out.endObject();
+                        }
+                        out.endArray().endObject();
+                    }
+                    @Override ReportWorkloadRequest create(Fields f) {
+                        return new ReportWorkloadRequest(f.fingerprint(), f.required(f.workload, "workload"));
+                    }
+                })
+                .registerTypeAdapter(ReportWorkloadResponse.class, new EntityAdapter<ReportWorkloadResponse>() {
+                    @Override void writeFields(JsonWriter out, ReportWorkloadResponse value) throws IOException {
+                        writeAbstractEntity(out, value);
+                    }
+                    @Override ReportWorkloadResponse create(Fields f) {
+                        return new ReportWorkloadResponse(f.required(f.configRepoUrl, "configRepoUrl"), f.required(f.version, "version"));
+                    }
+                })
+                .registerTypeAdapter(ReturnNodeRequest.class, new EntityAdapter<ReturnNodeRequest>() {
+                    @Override void writeFields(JsonWriter out, ReturnNodeRequest value) throws IOException {
+                        writeExecutorEntity(out, value);
+                        out.name("nodeName").value(value.getNodeName());
+                        out.name("status").value(value.getStatus().name());
+                        out.name("message").value(value.getMessage());
+                    }
+                    @Override ReturnNodeRequest create(Fields f) {
+                        String status = f.required(f.status, "status");
+                        ReturnNodeRequest.Status s;
+                        try {
+                            s = ReturnNodeRequest.Status.valueOf(status);
+                        } catch (IllegalArgumentException ex) {
+                            throw new JsonSyntaxException("Unknown status " + status, ex);
+                        }
+                        return new ReturnNodeRequest(f.fingerprint(), f.required(f.nodeName, "nodeName"), s, f.message);
+                    }
+                })
+                .registerTypeAdapter(UtilizeNodeRequest.class, new EntityAdapter<UtilizeNodeRequest>() {
+                    @Override void writeFields(JsonWriter out, UtilizeNodeRequest value) throws IOException {
+                        writeAbstractEntity(out, value);
+                        out.name("fileName").value(value.getFileName());
+                        out.name("definition").value(value.getDefinition());
+                        out.name("revision").value(value.getRevision());
+                        out.name("blob").value(value.getBlob());
+                    }
+                    @Override UtilizeNodeRequest create(Fields f) {
+                        String fileName = f.required(f.fileName, "fileName");
+                        if (f.definition == null) {
+                            f.required(f.revision, "revision");
+                            f.required(f.blob, "blob");
+                        }
+                        return new UtilizeNodeRequest(
+                                f.required(f.configRepoUrl, "configRepoUrl"), f.required(f.version, "version"),
+                                fileName, f.definition, f.revision, f.blob
+                        );
+                    }
+                })
+                .registerTypeAdapter(UtilizeNodeResponse.class, new EntityAdapter<UtilizeNodeResponse>() {
+                    @Override void writeFields(JsonWriter out, UtilizeNodeResponse value) throws IOException {
+                        writeExecutorEntity(out, value);
+                    }
+                    @Override UtilizeNodeResponse create(Fields f) {
+                        return new UtilizeNodeResponse(f.fingerprint());
+                    }
+                })
+        ;
+    }
+
+    /**
+     * Write the object envelope and delegate to subclasses for fields, read all known fields and let subclasses construct.
+     */
+    private static abstract class EntityAdapter<T extends Entity> extends TypeAdapter<T> {
+
+        abstract void writeFields(@Nonnull JsonWriter out, @Nonnull T value) throws IOException;
+
+        abstract @Nonnull T create(@Nonnull Fields fields);
+
+        @Override
+        public final void write(JsonWriter out, T value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            writeFields(out, value);
+            out.endObject();
+        }
+
+        @Override
+        public final T read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Fields fields = new Fields();
+            in.beginObject();
+            while (in.hasNext()) {
+                fields.read(in.nextName(), in);
+            }
+            in.endObject();
+            return create(fields);
+        }
+
+        static void writeAbstractEntity(@Nonnull JsonWriter out, @Nonnull AbstractEntity value) throws IOException {
+            out.name("configRepoUrl").value(value.getConfigRepoUrl());
+            out.name("version").value(value.getVersion());
+        }
+
+        static void writeExecutorEntity(@Nonnull JsonWriter out, @Nonnull ExecutorEntity value) throws IOException {
+            writeAbstractEntity(out, value);
+            out.name("executorUrl").value(value.getExecutorUrl());
+        }
+
+        static void writeStrings(@Nonnull JsonWriter out, @Nonnull Collection<String> values) throws IOException {
+            out.beginArray();
+            for (String value : values) {
+                out.value(value);
+            }
+            out.endArray();
+        }
+    }
+
+    /**
+     * Union of all fields any entity can carry, populated while reading.
+     */
+    private static final class Fields {
+        private String configRepoUrl;
+        private String version;
+        private String executorUrl;
+        private String crumb;
+        private String crumbRequestField;
+        private String diagnosis;
+        private Set<String> labels;
+        private String nodeName;
+        private String status;
+        private String message;
+        private List<String> usedNodes;
+        private Workload workload;
+        private String fileName;
+        private String definition;
+        private String revision;
+        private String blob;
+
+        private void read(@Nonnull String name, @Nonnull JsonReader in) throws IOException {
+            switch (name) {
+                case "configRepoUrl": configRepoUrl = nextString(in); break;
+                case "version": version = nextString(in); break;
+                case "executorUrl": executorUrl = nextString(in); break;
+                case "crumb": crumb = nextString(in); break;
+                case "crumbRequestField": crumbRequestField = nextString(in); break;
+                case "diagnosis": diagnosis = nextString(in); break;
+                case "labels": labels = nextStrings(in, new HashSet<String>()); break;
+                case "nodeName": nodeName = nextString(in); break;
+                case "status": status = nextString(in); break;
+                case "message": message = nextString(in); break;
+                case "usedNodes": usedNodes = nextStrings(in, new ArrayList<String>()); break;
+                case "workload": workload = nextWorkload(in); break;
+                case "fileName": fileName = nextString(in); break;
+                case "definition": definition = nextString(in); break;
+                case "revision": revision = nextString(in); break;
+                case "blob": blob = nextString(in); break;
+                default: in.skipValue();
+            }
+        }
+
+        private @Nonnull Fingerprint fingerprint() {
+            return new Fingerprint(
+                    required(configRepoUrl, "configRepoUrl"), required(version, "version"), required(executorUrl, "executorUrl")
+            );
+        }
+
+        private @Nonnull <V> V required(@CheckForNull V value, @Nonnull String name) {
+            if (value == null) throw new JsonSyntaxException("Required field '" + name + "' missing");
+            return value;
+        }
+
+        private static @CheckForNull String nextString(@Nonnull JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return in.nextString();
+        }
+
+        private static @CheckForNull <C extends Collection<String>> C nextStrings(@Nonnull JsonReader in, @Nonnull C out) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            in.beginArray();
+            while (in.hasNext()) {
+                out.add(in.nextString());
+            }
+            in.endArray();
+            return out;
+        }
+
+        private static @CheckForNull Workload nextWorkload(@Nonnull JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            List<WorkloadItem> items = new ArrayList<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!"items".equals(in.nextName())) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginArray();
+                while (in.hasNext()) {
+                    items.add(nextWorkloadItem(in));
+                }
+                in.endArray();
+            }
+            in.endObject();
+            return new Workload.WorkloadBuilder(items).build();
+        }
+
+        private static @Nonnull WorkloadItem nextWorkloadItem(@Nonnull JsonReader in) throws IOException {
+            Long id = null;
+            String name = null;
+            String labelExpr = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": id = in.nextLong(); break;
+                    case "name": name = nextString(in); break;
+                    case "labelExpr": labelExpr = nextString(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            if (id == null || name == null || labelExpr == null) throw new JsonSyntaxException("Incomplete workload item");
+            return new WorkloadItem(id, name, labelExpr);
+        }
+    }
+}
@@ -25,27 +25,72 @@ package com.redhat.jenkins.nodesharing.transport;
 
 import com.redhat.jenkins.nodesharing.NodeDefinition;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
 /**
+ * Ask executor to utilize the node.
+ *
+ * The definition is either sent inline, or referred to by config repo revision and blob id of the declaring file so
+ * the executor can resolve it from its own config repo. Executor responds with
+ * {@link javax.servlet.http.HttpServletResponse#SC_PRECONDITION_FAILED} when it can not resolve the reference.
+ *
  * @author ogondza.
  */
 public class UtilizeNodeRequest extends AbstractEntity {
 
     private final @Nonnull String fileName;
-    private final @Nonnull String definition;
+    private final @CheckForNull String definition;
+    private final @CheckForNull String revision;
+    private final @CheckForNull String blob;
 
     public UtilizeNodeRequest(@Nonnull String configRepoUrl, @Nonnull String version, @Nonnull NodeDefinition node) {
+        this(configRepoUrl, version, node.getDeclaringFileName(), node.getDefinition(), null, null);
+    }
+
+    /**
+     * Refer to the definition instead of sending it.
+     *
+     * @param revision Config repo revision the node is defined in.
+     * @param blob Blob id of the declaring file.
+     */
+    public UtilizeNodeRequest(
+            @Nonnull String configRepoUrl, @Nonnull String version, @Nonnull NodeDefinition node,
+            @Nonnull String revision, @Nonnull String blob
+    ) {
+        this(configRepoUrl, version, node.getDeclaringFileName(), null, revision, blob);
+    }
+
+    /*package*/ UtilizeNodeRequest(
+            @Nonnull String configRepoUrl, @Nonnull String version, @Nonnull String fileName,
+            @CheckForNull String definition, @CheckForNull String revision, @CheckForNull String blob
+    ) {
         super(configRepoUrl, version);
-        fileName = node.getDeclaringFileName();
-        definition = node.getDefinition();
+        if (definition == null && (revision == null || blob == null)) {
+            throw new IllegalArgumentException("Neither definition nor its reference provided for " + fileName);
+        }
+        this.fileName = fileName;
+        this.definition = definition;
+        this.revision = revision;
+        this.blob = blob;
     }
 
     public @Nonnull String getFileName() {
         return fileName;
     }
 
-    public @Nonnull String getDefinition() {
+    /**
+     * @return Inline definition, or null in case it is referred to.
+     */
+    public @CheckForNull String getDefinition() {
         return definition;
     }
+
+    public @CheckForNull String getRevision() {
+        return revision;
+    }
+
+    public @CheckForNull String getBlob() {
+        return blob;
+    }
 }
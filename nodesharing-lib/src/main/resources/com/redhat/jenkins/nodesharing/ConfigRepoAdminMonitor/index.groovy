@@ -1,3 +1,4 @@
+import com.redhat.jenkins.nodesharing.CircuitBreaker
 import com.redhat.jenkins.nodesharing.ConfigRepoAdminMonitor
 import hudson.Functions
 import jenkins.model.Jenkins
@@ -19,5 +20,19 @@ l.layout(permission: app.ADMINISTER) {
                 text(Functions.printThrowable(ex))
             }
         }
+        cram.openCircuits.each { CircuitBreaker breaker ->
+            h2("Not responding: " + breaker.url)
+            p {
+                text("Circuit ${breaker.state} after ${breaker.consecutiveFailures} consecutive failures")
+                if (breaker.retryAfter != null) {
+                    text(", next attempt after ${breaker.retryAfter}")
+                }
+            }
+            if (breaker.lastFailure != null) {
+                pre {
+                    text(Functions.printThrowable(breaker.lastFailure))
+                }
+            }
+        }
     }
 }
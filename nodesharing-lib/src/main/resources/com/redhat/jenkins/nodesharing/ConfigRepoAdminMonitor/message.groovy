@@ -1,3 +1,4 @@
+import com.redhat.jenkins.nodesharing.CircuitBreaker
 import com.redhat.jenkins.nodesharing.ConfigRepoAdminMonitor
 import jenkins.model.Jenkins
 
@@ -17,5 +18,15 @@ div("class": "error") {
                 }
             }
         }
+        cram.openCircuits.each { CircuitBreaker breaker ->
+            dt("Node sharing peer not responding: " + breaker.url)
+            dd {
+                text("${breaker.consecutiveFailures} consecutive failures")
+                st.nbsp()
+                a(href: cram.url) {
+                    text("Read more")
+                }
+            }
+        }
     }
 }
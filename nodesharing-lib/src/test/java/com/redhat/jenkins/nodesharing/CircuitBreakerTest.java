@@ -0,0 +1,50 @@
+package com.redhat.jenkins.nodesharing;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void openAfterConsecutiveFailures() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("https://jenkins.example.com");
+        ActionFailed.CommunicationError failure = new ActionFailed.CommunicationError(new IOException("Connection refused"));
+
+        for (int i = 0; i < 4; i++) {
+            assertFalse(breaker.acquire());
+            breaker.failed(false, failure);
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        }
+        // Success resets the counter
+        breaker.succeeded();
+        assertEquals(0, breaker.getConsecutiveFailures());
+
+        for (int i = 0; i < 5; i++) {
+            assertFalse(breaker.acquire());
+            breaker.failed(false, failure);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertNotNull(breaker.getRetryAfter());
+        assertSame(failure, breaker.getLastFailure());
+
+        try {
+            breaker.acquire();
+            fail();
+        } catch (ActionFailed.CircuitOpen ex) {
+            assertSame(failure, ex.getCause());
+        }
+
+        breaker.succeeded();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertNull(breaker.getRetryAfter());
+        assertNull(breaker.getLastFailure());
+    }
+}
@@ -0,0 +1,98 @@
+package com.redhat.jenkins.nodesharing;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigRepoRegistryTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void shareRepoForSameUrl() {
+        String url = "https://config.example.com/shareRepoForSameUrl.git";
+        Object first = new Object();
+        Object second = new Object();
+
+        ConfigRepo repo = ConfigRepoRegistry.acquire(url, new File("first"), first);
+        assertSame(repo, ConfigRepoRegistry.acquire(url, new File("second"), second));
+        assertEquals(url, repo.getUrl());
+        assertTrue(ConfigRepoRegistry.getAll().contains(repo));
+
+        assertFalse(ConfigRepoRegistry.release(url, first));
+        assertTrue(ConfigRepoRegistry.release(url, second));
+        assertFalse(ConfigRepoRegistry.getAll().contains(repo));
+
+        assertNotSame(repo, ConfigRepoRegistry.acquire(url, new File("first"), first));
+        assertTrue(ConfigRepoRegistry.release(url, first));
+    }
+
+    @Test
+    public void differentUrls() {
+        Object owner = new Object();
+        ConfigRepo foo = ConfigRepoRegistry.acquire("https://config.example.com/foo.git", new File("foo"), owner);
+        ConfigRepo bar = ConfigRepoRegistry.acquire("https://config.example.com/bar.git", new File("bar"), owner);
+        assertNotSame(foo, bar);
+
+        assertTrue(ConfigRepoRegistry.release("https://config.example.com/foo.git", owner));
+        assertTrue(ConfigRepoRegistry.release("https://config.example.com/bar.git", owner));
+    }
+
+    @Test
+    public void deleteWorkingCopyOnceUnused() throws Exception {
+        String url = "https://config.example.com/deleteWorkingCopyOnceUnused.git";
+        File dir = tmp.newFolder("shared");
+        Object first = new Object();
+        Object second = new Object();
+
+        ConfigRepoRegistry.acquire(url, dir, first);
+        ConfigRepoRegistry.acquire(url, tmp.newFolder("unused"), second);
+
+        assertFalse(ConfigRepoRegistry.releaseAndDelete(url, second));
+        assertTrue(dir.exists());
+
+        assertTrue(ConfigRepoRegistry.releaseAndDelete(url, first));
+        assertFalse(dir.exists());
+    }
+
+    @Test
+    public void closeRepoOnceOwnersAreCollected() throws Exception {
+        String url = "https://config.example.com/closeRepoOnceOwnersAreCollected.git";
+        File dir = tmp.newFolder("collected");
+        ObjectId blob;
+        try (Repository git = FileRepositoryBuilder.create(new File(dir, Constants.DOT_GIT))) {
+            git.create();
+            try (ObjectInserter inserter = git.newObjectInserter()) {
+                blob = inserter.insert(Constants.OBJ_BLOB, "content".getBytes(StandardCharsets.UTF_8));
+                inserter.flush();
+            }
+        }
+
+        Object owner = new Object();
+        ConfigRepo repo = ConfigRepoRegistry.acquire(url, dir, owner);
+        assertEquals("content", repo.readBlob(blob));
+        assertTrue(repo.isObjectsOpen());
+
+        owner = null;
+        for (int i = 0; i < 100 && ConfigRepoRegistry.getAll().contains(repo); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertFalse(ConfigRepoRegistry.getAll().contains(repo));
+        assertFalse(repo.isObjectsOpen());
+    }
+}
@@ -0,0 +1,46 @@
+package com.redhat.jenkins.nodesharing;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets() {
+        for (long value = 0; value < 1 << 20; value += 7) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertTrue(value + " <= " + upper, value <= upper);
+            // 3 significant bits preserved
+            assertTrue(value + " ~ " + upper, upper - value <= value / 8);
+            if (bucket > 0) {
+                assertTrue(LatencyHistogram.upperBoundOf(bucket - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void quantiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getValueAtQuantile(0.99));
+
+        for (int i = 1; i <= 1000; i++) {
+            h.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(1000000, h.getMax());
+        assertEquals(500500000, h.getSum());
+
+        assertApprox(500000, h.getValueAtQuantile(0.5));
+        assertApprox(990000, h.getValueAtQuantile(0.99));
+        assertEquals(1000000, h.getValueAtQuantile(1));
+    }
+
+    private void assertApprox(long expected, long actual) {
+        assertTrue(expected + " ~ " + actual, actual >= expected && actual - expected <= expected / 8);
+    }
+}
@@ -0,0 +1,63 @@
+package com.redhat.jenkins.nodesharing;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class NodeDefinitionCacheTest {
+
+    @Test
+    public void blobIdMatchesGit() {
+        assertEquals("e69de29bb2d1d6434b8b29ae775ad8c2e48c5391", NodeDefinitionCache.blobId("").name());
+        assertEquals("ce013625030ba8dba906f756967f9e9ca394464a", NodeDefinitionCache.blobId("hello\n").name());
+    }
+
+    @Test
+    public void reuseParsedDefinitions() {
+        NodeDefinitionCache cache = new NodeDefinitionCache(10);
+        String xml = definition("foo");
+
+        NodeDefinition first = cache.create("a.xml", xml);
+        assertNotNull(first);
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        assertSame(first, cache.create("a.xml", xml));
+        assertSame(first, cache.get("a.xml", NodeDefinitionCache.blobId(xml)));
+        assertEquals(2, cache.getHits());
+
+        // Name is derived from the file so the same content in other file is a different node
+        NodeDefinition other = cache.create("b.xml", xml);
+        assertNotSame(first, other);
+        assertEquals("b", other.getName());
+
+        assertNull(cache.create("a.unknown", xml));
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        NodeDefinitionCache cache = new NodeDefinitionCache(2);
+        NodeDefinition a = cache.create("a.xml", definition("a"));
+        NodeDefinition b = cache.create("b.xml", definition("b"));
+
+        assertSame(a, cache.create("a.xml", definition("a")));
+        cache.create("c.xml", definition("c"));
+
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        assertSame(a, cache.get("a.xml", NodeDefinitionCache.blobId(definition("a"))));
+        assertNull(cache.get("b.xml", NodeDefinitionCache.blobId(definition("b"))));
+        assertNotSame(b, cache.create("b.xml", definition("b")));
+    }
+
+    private static String definition(String label) {
+        return "<com.redhat.jenkins.nodesharingfrontend.SharedNode>\n" +
+                "  <label>" + label + "</label>\n" +
+                "</com.redhat.jenkins.nodesharingfrontend.SharedNode>\n";
+    }
+}
@@ -73,4 +73,32 @@ public class NodeDefinitionTest {
             assertTrue(e.getMessage().startsWith("No labels specified for node test"));
         }
     }
+
+    @Test
+    public void readLabelOfNodeOnly() {
+        String nodeXmlDef = "<com.redhat.jenkins.nodesharingfrontend.SharedNode>\n" +
+                "  <!-- <label>commented</label> -->\n" +
+                "  <name>test.redhat.com</name>\n" +
+                "  <launcher class=\"hudson.slaves.CommandLauncher\">\n" +
+                "    <label>nested</label>\n" +
+                "  </launcher>\n" +
+                "  <label>\n    foo <![CDATA[bar]]>\n  </label>\n" +
+                "  <label>second</label>\n" +
+                "  <nodeProperties/>\n" +
+                "</com.redhat.jenkins.nodesharingfrontend.SharedNode>";
+        NodeDefinition.Xml xmlDef = new NodeDefinition.Xml("test.xml", nodeXmlDef);
+        assertEquals("foo bar", xmlDef.getLabel());
+
+        nodeXmlDef = "<com.redhat.jenkins.nodesharingfrontend.SharedNode>\n" +
+                "  <launcher class=\"hudson.slaves.CommandLauncher\">\n" +
+                "    <label>nested</label>\n" +
+                "  </launcher>\n" +
+                "</com.redhat.jenkins.nodesharingfrontend.SharedNode>";
+        try {
+            new NodeDefinition.Xml("test.xml", nodeXmlDef);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("No labels found in "));
+        }
+    }
 }
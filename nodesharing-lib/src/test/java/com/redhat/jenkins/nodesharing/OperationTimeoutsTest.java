@@ -0,0 +1,74 @@
+package com.redhat.jenkins.nodesharing;
+
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class OperationTimeoutsTest {
+
+    @Test
+    public void timeoutGrowsWhenCallsTimeOut() {
+        OperationTimeouts.Window window = new OperationTimeouts.Window();
+        assertEquals(30000, window.getTimeout(30000));
+
+        for (int i = 0; i < 100; i++) {
+            window.add(10);
+        }
+        assertEquals(5000, window.getTimeout(30000)); // Floor
+
+        // Calls that timed out are recorded at the timeout used
+        for (int i = 0; i < 16; i++) {
+            window.add(window.getTimeout(30000));
+        }
+        assertEquals(15000, window.getTimeout(30000));
+
+        for (int i = 0; i < 16; i++) {
+            window.add(window.getTimeout(30000));
+        }
+        assertEquals(30000, window.getTimeout(30000)); // Configured
+    }
+
+    @Test
+    public void configureOperationTimeout() {
+        Properties properties = new Properties();
+        properties.setProperty("com.redhat.jenkins.nodesharing.RestEndpoint.TIMEOUT.nodeStatus", "4242");
+        properties.setProperty("com.redhat.jenkins.nodesharing.RestEndpoint.TIMEOUT.reportUsage", "invalid");
+        OperationTimeouts timeouts = new OperationTimeouts(42, properties, false);
+
+        assertEquals(4242, timeouts.get("nodeStatus"));
+        assertEquals(42, timeouts.get("reportUsage"));
+        assertEquals(42, timeouts.get("utilizeNode"));
+        assertEquals(4242, timeouts.get("https://jenkins.example.com/", "nodeStatus"));
+    }
+
+    @Test
+    public void executorTimeoutShrinksOnceItRespondsFast() {
+        Properties properties = new Properties();
+        properties.setProperty("com.redhat.jenkins.nodesharing.RestEndpoint.TIMEOUT.reportUsage", "60000");
+        OperationTimeouts timeouts = new OperationTimeouts(30000, properties, true);
+        String fast = "https://fast.example.com/";
+        String slow = "https://slow.example.com/";
+
+        assertEquals(60000, timeouts.get(fast, "reportUsage"));
+
+        for (int i = 0; i < 100; i++) {
+            timeouts.record(fast, "reportUsage", TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertEquals(5000, timeouts.get(fast, "reportUsage")); // Floor
+        assertEquals(60000, timeouts.get(slow, "reportUsage"));
+        assertEquals(60000, timeouts.get("reportUsage"));
+        assertEquals(30000, timeouts.get(fast, "utilizeNode"));
+    }
+
+    @Test
+    public void timeoutNotAdaptedUnlessEnabled() {
+        OperationTimeouts timeouts = new OperationTimeouts(30000, new Properties(), false);
+        for (int i = 0; i < 100; i++) {
+            timeouts.record("https://fast.example.com/", "reportUsage", TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertEquals(30000, timeouts.get("https://fast.example.com/", "reportUsage"));
+    }
+}
@@ -2,16 +2,50 @@ package com.redhat.jenkins.nodesharing;
 
 import static org.junit.Assert.*;
 
+import org.apache.http.pool.PoolStats;
 import org.junit.Test;
 
+import java.util.Properties;
+
 public class RestEndpointTest {
 
-    static {
-        System.setProperty("com.redhat.jenkins.nodesharing.RestEndpoint.TIMEOUT", "42");
+    @Test
+    public void configureTimeout() {
+        Properties properties = new Properties();
+        assertEquals(30000, RestEndpoint.parseTimeout(properties));
+
+        properties.setProperty("com.redhat.jenkins.nodesharing.RestEndpoint.TIMEOUT", "42");
+        assertEquals(42, RestEndpoint.parseTimeout(properties));
+
+        properties.setProperty("com.redhat.jenkins.nodesharing.RestEndpoint.TIMEOUT", "invalid");
+        assertEquals(30000, RestEndpoint.parseTimeout(properties));
     }
 
     @Test
-    public void configureTimeout() {
-        assertEquals(42, RestEndpoint.TIMEOUT);
+    public void acceptsGzip() {
+        assertTrue(RestEndpoint.acceptsGzip("gzip"));
+        assertTrue(RestEndpoint.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(RestEndpoint.acceptsGzip("identity, *"));
+        assertTrue(RestEndpoint.acceptsGzip("x-gzip"));
+
+        assertFalse(RestEndpoint.acceptsGzip(null));
+        assertFalse(RestEndpoint.acceptsGzip(""));
+        assertFalse(RestEndpoint.acceptsGzip("identity"));
+        assertFalse(RestEndpoint.acceptsGzip("gzip;q=0"));
+        assertFalse(RestEndpoint.acceptsGzip("gzip; q=0.0, *"));
+        assertFalse(RestEndpoint.acceptsGzip("*;q=0"));
+        assertFalse(RestEndpoint.acceptsGzip("gzip;q=invalid"));
+        assertFalse(RestEndpoint.acceptsGzip("gzipped"));
+    }
+
+    @Test
+    public void connectionPoolStats() {
+        RestEndpoint.shutdownClient();
+        PoolStats stats = RestEndpoint.getConnectionPoolStats();
+        assertEquals(0, stats.getLeased());
+        assertEquals(0, stats.getAvailable());
+        assertEquals(0, stats.getPending());
+        assertEquals(100, stats.getMax());
+        assertTrue(RestEndpoint.getConnectionPoolRouteStats().isEmpty());
     }
 }
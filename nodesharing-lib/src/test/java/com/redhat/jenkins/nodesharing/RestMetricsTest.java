@@ -0,0 +1,54 @@
+package com.redhat.jenkins.nodesharing;
+
+import com.google.gson.stream.JsonWriter;
+import org.apache.http.pool.PoolStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+
+public class RestMetricsTest {
+
+    // Passed explicitly not to depend on RestEndpoint being initialized
+    private static final PoolStats POOL = new PoolStats(1, 2, 3, 100);
+
+    @Before @After
+    public void clear() {
+        RestMetrics.clear();
+    }
+
+    @Test
+    public void quantileLabels() throws Exception {
+        RestMetrics.record(RestMetrics.Direction.OUTGOING, "utilizeNode", "https://jenkins1.example.com/", TimeUnit.MILLISECONDS.toNanos(5), RestMetrics.OK);
+
+        StringWriter json = new StringWriter();
+        JsonWriter out = new JsonWriter(json);
+        out.beginObject();
+        RestMetrics.writeJson(out, POOL);
+        out.endObject();
+        out.flush();
+        for (String label : new String[] {"p50", "p90", "p99", "p999"}) {
+            assertThat(json.toString(), containsString("\"" + label + "\":"));
+        }
+        assertThat(json.toString(), containsString("\"remote\":\"https://jenkins1.example.com/\""));
+        assertThat(json.toString(), containsString("\"leased\":1"));
+    }
+
+    @Test
+    public void prometheus() {
+        RestMetrics.record(RestMetrics.Direction.INCOMING, "reportUsage", "https://jenkins1.example.com/", TimeUnit.MILLISECONDS.toNanos(5), "status_409");
+
+        StringWriter text = new StringWriter();
+        RestMetrics.writePrometheus(new PrintWriter(text), POOL);
+        assertThat(text.toString(), containsString(
+                "nodesharing_rest_calls_total{direction=\"incoming\",operation=\"reportUsage\",remote=\"https://jenkins1.example.com/\",outcome=\"status_409\"} 1"
+        ));
+        assertThat(text.toString(), containsString("nodesharing_rest_connections{state=\"max\"} 100"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.redhat.jenkins.nodesharing.transport;
+
+import com.google.gson.JsonSyntaxException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EntityTest {
+
+    private final ExecutorEntity.Fingerprint fingerprint = new ExecutorEntity.Fingerprint("configRepo", "4.2", "my-executor");
+
+    @Test
+    public void streamRoundtrip() throws Exception {
+        ReportUsageResponse sent = new ReportUsageResponse(fingerprint, Arrays.asList("foo", "bar"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sent.toOutputStream(out);
+        ReportUsageResponse received = Entity.fromInputStream(new ByteArrayInputStream(out.toByteArray()), ReportUsageResponse.class);
+        assertEquals(sent.getExecutorUrl(), received.getExecutorUrl());
+        assertEquals(sent.getUsedNodes(), received.getUsedNodes());
+        assertEquals(sent.toString(), out.toString("UTF-8"));
+    }
+
+    @Test
+    public void nullFieldsOmitted() throws Exception {
+        ReturnNodeRequest sent = new ReturnNodeRequest(fingerprint, "node", ReturnNodeRequest.Status.OK, null);
+        assertEquals(
+                "{\"configRepoUrl\":\"configRepo\",\"version\":\"4.2\",\"executorUrl\":\"my-executor\",\"nodeName\":\"node\",\"status\":\"OK\"}",
+                sent.toString()
+        );
+        ReturnNodeRequest received = Entity.fromString(sent.toString(), ReturnNodeRequest.class);
+        assertEquals(ReturnNodeRequest.Status.OK, received.getStatus());
+        assertNull(received.getMessage());
+    }
+
+    @Test
+    public void utilizeNodeByReference() throws Exception {
+        UtilizeNodeRequest sent = new UtilizeNodeRequest("configRepo", "4.2", "node.xml", null, "abc", "def");
+        assertEquals(
+                "{\"configRepoUrl\":\"configRepo\",\"version\":\"4.2\",\"fileName\":\"node.xml\",\"revision\":\"abc\",\"blob\":\"def\"}",
+                sent.toString()
+        );
+        UtilizeNodeRequest received = Entity.fromString(sent.toString(), UtilizeNodeRequest.class);
+        assertNull(received.getDefinition());
+        assertEquals("abc", received.getRevision());
+        assertEquals("def", received.getBlob());
+
+        received = Entity.fromString("{\"configRepoUrl\":\"configRepo\",\"version\":\"4.2\",\"fileName\":\"node.xml\",\"definition\":\"<xml/>\"}", UtilizeNodeRequest.class);
+        assertEquals("<xml/>", received.getDefinition());
+        assertNull(received.getRevision());
+        assertNull(received.getBlob());
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void utilizeNodeWithoutDefinition() throws Exception {
+        Entity.fromString("{\"configRepoUrl\":\"configRepo\",\"version\":\"4.2\",\"fileName\":\"node.xml\",\"revision\":\"abc\"}", UtilizeNodeRequest.class);
+    }
+
+    @Test
+    public void unknownFieldsSkipped() throws Exception {
+        CrumbResponse crumb = Entity.fromString(
+                "{\"_class\":\"hudson.security.csrf.DefaultCrumbIssuer\",\"crumb\":\"abc\",\"crumbRequestField\":\"Jenkins-Crumb\",\"extra\":{\"a\":[1]}}",
+                CrumbResponse.class
+        );
+        assertEquals("abc", crumb.getCrumb());
+        assertEquals("Jenkins-Crumb", crumb.getCrumbRequestField());
+    }
+
+    @Test
+    public void nodeStatusWithoutNodeName() throws Exception {
+        NodeStatusRequest request = Entity.fromString("{\"configRepoUrl\":\"configRepo\",\"version\":\"4.2\"}", NodeStatusRequest.class);
+        assertNull(request.getNodeName());
+
+        NodeStatusResponse response = Entity.fromString(
+                "{\"configRepoUrl\":\"configRepo\",\"version\":\"4.2\",\"executorUrl\":\"my-executor\",\"status\":\"NOT_FOUND\"}",
+                NodeStatusResponse.class
+        );
+        assertNull(response.getNodeName());
+        assertEquals(NodeStatusResponse.Status.NOT_FOUND, response.getStatus());
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void missingField() throws Exception {
+        Entity.fromString("{\"configRepoUrl\":\"configRepo\"}", ReportUsageRequest.class);
+    }
+}
@@ -0,0 +1,79 @@
+package com.redhat.jenkins.nodesharing.transport;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import com.redhat.jenkins.nodesharing.transport.ReportWorkloadRequest.Workload.WorkloadBuilder;
+import com.redhat.jenkins.nodesharing.transport.ReportWorkloadRequest.Workload.WorkloadItem;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hand-written adapters must keep up with the entity fields, compare them with reflective Gson binding.
+ */
+public class EntityTypeAdaptersTest {
+
+    private static final ExecutorEntity.Fingerprint FINGERPRINT = new ExecutorEntity.Fingerprint("configRepo", "4.2", "my-executor");
+
+    // All fields populated so the ones adapters do not handle are noticed
+    private static final List<Entity> ENTITIES = Arrays.<Entity>asList(
+            new CrumbResponse("abc", "Jenkins-Crumb"),
+            new DiscoverRequest(FINGERPRINT),
+            new DiscoverResponse("configRepo", "4.2", Collections.singleton("solaris sparc"), "diagnosis"),
+            new NodeStatusRequest("configRepo", "4.2", "node"),
+            new NodeStatusResponse(FINGERPRINT, "node", NodeStatusResponse.Status.BUSY),
+            new RefreshConfigRequest("configRepo", "4.2", "abc"),
+            new ReportUsageRequest("configRepo", "4.2"),
+            new ReportUsageResponse(FINGERPRINT, Arrays.asList("foo", "bar")),
+            new ReportWorkloadRequest(FINGERPRINT, new WorkloadBuilder(Arrays.asList(
+                    new WorkloadItem(1, "job", "solaris"), new WorkloadItem(2, "other", "!windows")
+            )).build()),
+            new ReportWorkloadResponse("configRepo", "4.2"),
+            new ReturnNodeRequest(FINGERPRINT, "node", ReturnNodeRequest.Status.FAILED, "message"),
+            new UtilizeNodeRequest("configRepo", "4.2", "node.xml", "<xml/>", "abc", "def"),
+            new UtilizeNodeResponse(FINGERPRINT)
+    );
+
+    @Test
+    public void sameAsReflectiveBinding() {
+        Gson reflective = new Gson();
+        JsonParser parser = new JsonParser();
+        for (Entity entity : ENTITIES) {
+            assertEquals(entity.getClass().getSimpleName(), reflective.toJsonTree(entity), parser.parse(entity.toString()));
+        }
+    }
+
+    @Test
+    public void roundtrip() {
+        for (Entity sent : ENTITIES) {
+            Entity received = Entity.fromString(sent.toString(), sent.getClass());
+            assertEquals(sent.getClass().getSimpleName(), sent.toString(), received.toString());
+        }
+    }
+
+    @Test
+    public void allEntitiesCovered() throws Exception {
+        Set<Class<?>> covered = new HashSet<>();
+        for (Entity entity : ENTITIES) {
+            covered.add(entity.getClass());
+        }
+
+        File dir = new File(Entity.class.getResource(Entity.class.getSimpleName() + ".class").toURI()).getParentFile();
+        for (String name : dir.list()) {
+            if (!name.endsWith(".class") || name.contains("$")) continue;
+
+            Class<?> type = Class.forName(Entity.class.getPackage().getName() + "." + name.replaceAll("\\.class$", ""));
+            if (!Entity.class.isAssignableFrom(type) || Modifier.isAbstract(type.getModifiers())) continue;
+            assertTrue(type.getName(), covered.contains(type));
+        }
+    }
+}
@@ -27,16 +27,20 @@ import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
 import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import com.google.gson.JsonParseException;
 import com.redhat.jenkins.nodesharing.ActionFailed;
 import com.redhat.jenkins.nodesharing.ConfigRepo;
+import com.redhat.jenkins.nodesharing.Metrics;
 import com.redhat.jenkins.nodesharing.NodeDefinition;
+import com.redhat.jenkins.nodesharing.NodeDefinitionCache;
 import com.redhat.jenkins.nodesharing.RestEndpoint;
+import com.redhat.jenkins.nodesharing.RestMetrics;
 import com.redhat.jenkins.nodesharing.transport.DiscoverRequest;
 import com.redhat.jenkins.nodesharing.transport.DiscoverResponse;
-import com.redhat.jenkins.nodesharing.transport.Entity;
 import com.redhat.jenkins.nodesharing.transport.ExecutorEntity;
 import com.redhat.jenkins.nodesharing.transport.NodeStatusRequest;
 import com.redhat.jenkins.nodesharing.transport.NodeStatusResponse;
+import com.redhat.jenkins.nodesharing.transport.RefreshConfigRequest;
 import com.redhat.jenkins.nodesharing.transport.ReportUsageRequest;
 import com.redhat.jenkins.nodesharing.transport.ReportUsageResponse;
 import com.redhat.jenkins.nodesharing.transport.ReportWorkloadRequest;
@@ -53,6 +57,7 @@ import jenkins.model.Jenkins;
 import jenkins.security.NotReallyRoleSensitiveCallable;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.HttpPost;
+import org.eclipse.jgit.lib.ObjectId;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.StaplerRequest;
@@ -70,6 +75,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -84,6 +91,7 @@ public class Api {
 
     private final SharedNodeCloud cloud;
     private final RestEndpoint rest;
+    private final String orchestratorUrl;
     private final String version;
 
     public Api(@Nonnull ConfigRepo.Snapshot snapshot,
@@ -110,7 +118,8 @@ public class Api {
         }
 
         this.fingerprint = new ExecutorEntity.Fingerprint(configRepoUrl, version, jenkinsUrl);
-        rest = new RestEndpoint(snapshot.getOrchestratorUrl(), "node-sharing-orchestrator", getRestCredential(cloud));
+        orchestratorUrl = snapshot.getOrchestratorUrl();
+        rest = new RestEndpoint(orchestratorUrl, "node-sharing-orchestrator", getRestCredential(cloud));
     }
 
     @Nonnull
@@ -132,13 +141,23 @@ public class Api {
     /**
      * Put the queue items to Orchestrator
      */
-    // Response never used as there is likely nothing to report - async request candidate
     public void reportWorkload(@Nonnull final ReportWorkloadRequest.Workload workload) {
         if (cloud.isDisabled()) return;
         final ReportWorkloadRequest request = new ReportWorkloadRequest(fingerprint, workload);
         rest.executeRequest(rest.post("reportWorkload"), request, ReportWorkloadResponse.class);
     }
 
+    /**
+     * Put the queue items to Orchestrator without waiting for the response.
+     *
+     * @return Future completed once orchestrator accepts the workload.
+     */
+    public @Nonnull CompletableFuture<?> reportWorkloadAsync(@Nonnull final ReportWorkloadRequest.Workload workload) {
+        if (cloud.isDisabled()) return CompletableFuture.completedFuture(null);
+        final ReportWorkloadRequest request = new ReportWorkloadRequest(fingerprint, workload);
+        return rest.executeRequestAsync(rest.post("reportWorkload"), request, ReportWorkloadResponse.class);
+    }
+
     /**
      * Request to discover the state of the Orchestrator.
      *
@@ -191,22 +210,31 @@ public class Api {
      * - "200 OK" is used when the node was accepted, the node is expected to be correctly added to Jenkins by the time
      *   the request completes with the code. The code is also returned when the node is already helt by this executor.
      * - "410 Gone" when there is no longer the need for such host and orchestrator can reuse it immediately. The node must not be created.
+     * - "412 Precondition Failed" when the definition referred to can not be resolved locally. Orchestrator is expected
+     *   to resend the request with the definition inline.
      */
-    @RequirePOST
+    @RequirePOST @RestMetrics.Measured("utilizeNode")
     public void doUtilizeNode(@Nonnull final StaplerRequest req, @Nonnull final StaplerResponse rsp) throws IOException {
         final Jenkins jenkins = Jenkins.getInstance();
         jenkins.checkPermission(RestEndpoint.RESERVE);
+        RestMetrics.identifyRemote(req, orchestratorUrl);
+
+        UtilizeNodeRequest request = RestEndpoint.readEntity(req, UtilizeNodeRequest.class);
+        final NodeDefinition definition = getDefinition(request);
+        if (definition == null) {
+            if (request.getDefinition() != null) throw new AssertionError("Unknown node definition: " + request.getFileName());
 
-        UtilizeNodeRequest request = Entity.fromInputStream(req.getInputStream(), UtilizeNodeRequest.class);
-        final NodeDefinition definition = NodeDefinition.create(request.getFileName(), request.getDefinition());
-        if (definition == null) throw new AssertionError("Unknown node definition: " + request.getFileName());
+            rsp.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
+            LOGGER.info("Unable to resolve definition " + request.getFileName() + "@" + request.getBlob() + " of revision " + request.getRevision());
+            return;
+        }
 
         final String name = definition.getName();
 
         // utilizeNode call received even though the node is already being utilized
         Node node = getCollidingNode(jenkins, name);
         if (node != null) {
-            new UtilizeNodeResponse(fingerprint).toOutputStream(rsp.getOutputStream());
+            RestEndpoint.writeEntity(req, rsp, new UtilizeNodeResponse(fingerprint));
             rsp.setStatus(HttpServletResponse.SC_OK);
             LOGGER.warning("Skipping node addition as it already exists");
             return;
@@ -235,7 +263,7 @@ public class Api {
                 }
             });
 
-            new UtilizeNodeResponse(fingerprint).toOutputStream(rsp.getOutputStream());
+            RestEndpoint.writeEntity(req, rsp, new UtilizeNodeResponse(fingerprint));
             rsp.setStatus(HttpServletResponse.SC_OK);
         } catch (IllegalArgumentException e) {
             e.printStackTrace(new PrintStream(rsp.getOutputStream(), false, StandardCharsets.UTF_8.name()));
@@ -243,6 +271,22 @@ public class Api {
         }
     }
 
+    // Definition sent inline or resolved from local config repo, null if the reference can not be resolved
+    private @CheckForNull NodeDefinition getDefinition(@Nonnull UtilizeNodeRequest request) {
+        String definition = request.getDefinition();
+        if (definition != null) return NodeDefinitionCache.getInstance().create(request.getFileName(), definition);
+
+        String revision = request.getRevision();
+        String blob = request.getBlob();
+        if (revision == null || blob == null) throw new AssertionError(); // Enforced by the entity
+        try {
+            return cloud.resolveNodeDefinition(request.getFileName(), revision, ObjectId.fromString(blob));
+        } catch (IllegalArgumentException ex) {
+            LOGGER.log(Level.WARNING, "Malformed blob id " + blob, ex);
+            return null;
+        }
+    }
+
     private boolean isThereAWorkloadFor(Jenkins jenkins, NodeDefinition definition) {
         // Nothing will be executed
         if (jenkins.isQuietingDown() || jenkins.isTerminating()) {
@@ -281,24 +325,26 @@ public class Api {
     /**
      * Query Executor Jenkins to report the status of shared node.
      */
-    @RequirePOST
+    @RequirePOST @RestMetrics.Measured("nodeStatus")
     public void doNodeStatus(@Nonnull final StaplerRequest req, @Nonnull final StaplerResponse rsp) throws IOException {
         Jenkins.getInstance().checkPermission(RestEndpoint.RESERVE);
+        RestMetrics.identifyRemote(req, orchestratorUrl);
 
-        NodeStatusRequest request = Entity.fromInputStream(req.getInputStream(), NodeStatusRequest.class);
+        NodeStatusRequest request = RestEndpoint.readEntity(req, NodeStatusRequest.class);
         String nodeName = request.getNodeName();
         NodeStatusResponse.Status status = NodeStatusResponse.Status.NOT_FOUND;
         if (nodeName != null) // TODO Why would it be null?
             status = cloud.getNodeStatus(request.getNodeName());
         NodeStatusResponse response = new NodeStatusResponse(fingerprint, request.getNodeName(), status);
-        response.toOutputStream(rsp.getOutputStream());
+        RestEndpoint.writeEntity(req, rsp, response);
     }
 
-    @RequirePOST
+    @RequirePOST @RestMetrics.Measured("reportUsage")
     public void doReportUsage(@Nonnull final StaplerRequest req, @Nonnull final StaplerResponse rsp) throws IOException {
         Jenkins.getInstance().checkPermission(RestEndpoint.RESERVE);
+        RestMetrics.identifyRemote(req, orchestratorUrl);
 
-        ReportUsageRequest request = Entity.fromInputStream(req.getInputStream(), ReportUsageRequest.class);
+        ReportUsageRequest request = RestEndpoint.readEntity(req, ReportUsageRequest.class);
         ArrayList<String> usedNodes = new ArrayList<>();
         for (Node node : Jenkins.getInstance().getNodes()) {
             if (node instanceof SharedNode) {
@@ -315,7 +361,36 @@ public class Api {
         // Schedule report workload to Orchestrator
         WorkloadReporter.Detector.getInstance().scheduleUpdate();
 
-        new ReportUsageResponse(fingerprint, usedNodes).toOutputStream(rsp.getOutputStream());
+        RestEndpoint.writeEntity(req, rsp, new ReportUsageResponse(fingerprint, usedNodes));
+    }
+
+    /**
+     * Refresh config repository once it has changed.
+     *
+     * Called by orchestrator with {@link RefreshConfigRequest}, or by a push hook with no entity or a payload of its own.
+     * The refresh is performed in background and skipped in case the revision from the request is in use already.
+     */
+    @RequirePOST @RestMetrics.Measured("refreshConfig")
+    public void doRefreshConfig(@Nonnull final StaplerRequest req, @Nonnull final StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(RestEndpoint.RESERVE);
+        RestMetrics.identifyRemote(req, orchestratorUrl);
+
+        String revision = null;
+        try {
+            revision = RestEndpoint.readEntity(req, RefreshConfigRequest.class).getRevision();
+        } catch (JsonParseException ex) {
+            // No entity or a payload of the push hook, refresh anyway
+            LOGGER.log(Level.FINE, "No refreshConfig entity received, refreshing " + cloud.name, ex);
+        }
+        cloud.scheduleConfigRefresh(revision);
+    }
+
+    /**
+     * Latencies and outcomes of REST calls as JSON, or in Prometheus text format with {@code ?format=prometheus}.
+     */
+    public void doMetrics(@Nonnull final StaplerRequest req, @Nonnull final StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        Metrics.write(req, rsp);
     }
 
     /**
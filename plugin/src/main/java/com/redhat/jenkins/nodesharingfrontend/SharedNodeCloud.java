@@ -4,15 +4,17 @@ import com.cloudbees.plugins.credentials.domains.DomainRequirement;
 import com.google.common.annotations.VisibleForTesting;
 import com.redhat.jenkins.nodesharing.ConfigRepo;
 import com.redhat.jenkins.nodesharing.ConfigRepoAdminMonitor;
+import com.redhat.jenkins.nodesharing.ConfigRepoRegistry;
 import com.redhat.jenkins.nodesharing.ExecutorJenkins;
 import com.redhat.jenkins.nodesharing.NodeDefinition;
+import com.redhat.jenkins.nodesharing.NodeDefinitionCache;
 import com.redhat.jenkins.nodesharing.RestEndpoint;
 import com.redhat.jenkins.nodesharing.TaskLog;
 import com.redhat.jenkins.nodesharing.transport.DiscoverResponse;
 import com.redhat.jenkins.nodesharing.transport.NodeStatusResponse;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
-import hudson.FilePath;
+import hudson.Util;
 import hudson.model.Computer;
 import hudson.model.Descriptor;
 import hudson.model.Label;
@@ -44,11 +46,14 @@ import javax.servlet.ServletException;
 import jenkins.model.Jenkins;
 
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import jenkins.model.JenkinsLocationConfiguration;
+import org.eclipse.jgit.lib.ObjectId;
 import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.cloudstats.CloudStatistics;
 import org.jenkinsci.plugins.cloudstats.ProvisioningActivity;
@@ -89,6 +94,8 @@ public class SharedNodeCloud extends Cloud {
 
     @Nullable
     private transient ConfigRepo configRepo; // Null after deserialization until getConfigRepo is called
+    @Nullable
+    private transient ConfigRepo.Listener configRepoListener; // Registered with configRepo
     @CheckForNull
     private transient ConfigRepo.Snapshot latestConfig; // Null when not yet obtained or there ware errors while doing so
 
@@ -129,7 +136,6 @@ public class SharedNodeCloud extends Cloud {
         this.configRepoUrl = configRepoUrl;
         this.orchestratorCredentialsId = orchestratorCredentialsId;
         this.disabled = disabled;
-        this.configRepo = getConfigRepo();
     }
 
     /**
@@ -185,16 +191,35 @@ public class SharedNodeCloud extends Cloud {
         return orchestratorCredentialsId;
     }
 
+    /**
+     * Get config repo shared with other clouds using the same url.
+     */
     @Nonnull
     private ConfigRepo getConfigRepo() {
-        synchronized (this) { // Prevent several ConfigRepo instances to be created over same directory
+        synchronized (this) {
             if (configRepo != null) return configRepo;
 
-            FilePath configRepoDir = Jenkins.getInstance().getRootPath().child("node-sharing/configs/" + name);
-            return configRepo = new ConfigRepo(configRepoUrl, new File(configRepoDir.getRemote()));
+            configRepoListener = new ConfigRepo.Listener() {
+                @Override public void onChange(@Nonnull ConfigRepo.Snapshot snapshot) {
+                    setLatestConfig(snapshot);
+                }
+            };
+            configRepo = ConfigRepoRegistry.acquire(configRepoUrl, getConfigRepoDir(configRepoUrl), configRepoListener);
+            configRepo.addListener(configRepoListener);
+            return configRepo;
         }
     }
 
+    /**
+     * Directory to clone config repo into in case no other cloud uses the same url.
+     *
+     * Named after the url so two repositories never share a directory, no matter which cloud acquired them first.
+     */
+    @Nonnull
+    private static File getConfigRepoDir(@Nonnull String configRepoUrl) {
+        return new File(Jenkins.getInstance().getRootDir(), "node-sharing/configs/" + Util.getDigestOf(configRepoUrl));
+    }
+
     /**
      * Get latest config repo snapshot.
      *
@@ -213,22 +238,74 @@ public class SharedNodeCloud extends Cloud {
         return latestConfig;
     }
 
-    synchronized private void updateConfigSnapshot() throws InterruptedException {
+    // Not holding the cloud lock while reading the snapshot as other clouds sharing the repo are notified meanwhile
+    private void updateConfigSnapshot() throws InterruptedException {
         try {
-            String oldRev = latestConfig == null ? null : latestConfig.getSource();
-            latestConfig = getConfigRepo().getSnapshot();
-            String newRev = latestConfig.getSource();
-            if (!newRev.equals(oldRev)) {
-                LOGGER.info("Config repo for " + name + " updated from " + oldRev + " to " + newRev);
-                // Drop an Api instance to recreate it based on the new config repo content
-                api = null;
-            }
+            setLatestConfig(getConfigRepo().getSnapshot());
         } catch (IOException|TaskLog.TaskFailed ex) {
             ADMIN_MONITOR.report(configRepoUrl, ex);
             LOGGER.log(Level.SEVERE, "Failed updating config", ex);
         }
     }
 
+    /**
+     * Update config snapshot in background.
+     *
+     * @param revision Revision known to be the latest, skip update in case it is in use already. Null to update anyway.
+     */
+    /*package*/ void scheduleConfigRefresh(@CheckForNull String revision) {
+        ConfigRepo.Snapshot config = latestConfig;
+        if (revision != null && config != null && revision.equals(config.getSource())) return;
+
+        Computer.threadPoolForRemoting.submit(new Runnable() {
+            @Override public void run() {
+                try {
+                    updateConfigSnapshot();
+                } catch (InterruptedException e) {
+                    LOGGER.log(Level.INFO, "Config refresh of " + name + " interrupted", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Find node definition the orchestrator refers to.
+     *
+     * In case it is not found in the config snapshot of a different revision, the snapshot is updated in background as
+     * this instance is likely behind. The caller is not kept waiting for the update.
+     *
+     * @param fileName Declaring file name.
+     * @param revision Config repo revision the orchestrator uses.
+     * @param blob Blob id of the declaring file.
+     * @return The definition or null if it can not be resolved locally.
+     */
+    /*package*/ @CheckForNull NodeDefinition resolveNodeDefinition(
+            @Nonnull String fileName, @Nonnull String revision, @Nonnull ObjectId blob
+    ) {
+        NodeDefinition definition = NodeDefinitionCache.getInstance().get(fileName, blob);
+        if (definition != null) return definition;
+
+        ConfigRepo.Snapshot config = latestConfig;
+        if (config != null) {
+            definition = config.getNodeDefinition(fileName, blob);
+            if (definition != null) return definition;
+        }
+
+        scheduleConfigRefresh(revision);
+        return null;
+    }
+
+    synchronized private void setLatestConfig(@Nonnull ConfigRepo.Snapshot config) {
+        String oldRev = latestConfig == null ? null : latestConfig.getSource();
+        latestConfig = config;
+        String newRev = config.getSource();
+        if (!newRev.equals(oldRev)) {
+            LOGGER.info("Config repo for " + name + " updated from " + oldRev + " to " + newRev);
+            // Drop an Api instance to recreate it based on the new config repo content
+            api = null;
+        }
+    }
+
     /*package*/ boolean isActive() {
         ConfigRepo.Snapshot config = getLatestConfig();
         if (config != null) {
@@ -244,17 +321,25 @@ public class SharedNodeCloud extends Cloud {
 
     @Extension
     public static class ConfigRepoUpdater extends PeriodicWork {
+        // Polling is a fallback in case the changes are not pushed through Api#doRefreshConfig
+        private static final long POLLING_PERIOD = Long.getLong(
+                "com.redhat.jenkins.nodesharingfrontend.SharedNodeCloud.ConfigRepoUpdater.POLLING_PERIOD", 5 * MIN
+        );
 
         @Override
         public long getRecurrencePeriod() {
-            return 5 * MIN;
+            return POLLING_PERIOD;
         }
 
         @Override
         public void doRun() throws Exception {
             ADMIN_MONITOR.clear();
+            // Update every repo once, other clouds sharing it are notified
+            Set<ConfigRepo> updated = Collections.newSetFromMap(new IdentityHashMap<ConfigRepo, Boolean>());
             for (SharedNodeCloud cloud : getAll()) {
-                cloud.updateConfigSnapshot();
+                if (updated.add(cloud.getConfigRepo())) {
+                    cloud.updateConfigSnapshot();
+                }
             }
         }
     }
@@ -316,12 +401,7 @@ public class SharedNodeCloud extends Cloud {
             return false;
         }
 
-        for (NodeDefinition node : latestConfig.getNodes().values()) {
-            if (label != null && label.matches(node.getLabelAtoms())) {
-                return true;
-            }
-        }
-        return false;
+        return latestConfig.canProvision(label);
     }
 
     @Override
@@ -436,12 +516,13 @@ public class SharedNodeCloud extends Cloud {
                 return FormValidation.error(e, Messages.InvalidURI());
             }
 
-            FilePath testConfigRepoDir = Jenkins.getInstance().getRootPath().child("node-sharing/configs/testNewConfig");
-            testConfigRepoDir.deleteRecursive();
+            // Held until released explicitly once tested, the working copy is deleted unless some cloud uses it
+            Object owner = new Object();
             try {
                 SharedNodeCloud cloud = new SharedNodeCloud(configRepoUrl, restCredentialId);
+                ConfigRepo configRepo = ConfigRepoRegistry.acquire(configRepoUrl, getConfigRepoDir(configRepoUrl), owner);
                 String jenkinsUrl = getJenkinsUrl();
-                Api api = new Api(cloud.getConfigRepo().getSnapshot(), configRepoUrl, cloud, jenkinsUrl);
+                Api api = new Api(configRepo.getSnapshot(), configRepoUrl, cloud, jenkinsUrl);
                 DiscoverResponse discover = api.discover();
                 if (!discover.getDiagnosis().isEmpty()) {
                     return FormValidation.warning(discover.getDiagnosis());
@@ -459,7 +540,7 @@ public class SharedNodeCloud extends Cloud {
                 e.printStackTrace();
                 return FormValidation.error(e, "Test failed");
             } finally {
-                testConfigRepoDir.deleteRecursive();
+                ConfigRepoRegistry.releaseAndDelete(configRepoUrl, owner);
             }
         }
     }
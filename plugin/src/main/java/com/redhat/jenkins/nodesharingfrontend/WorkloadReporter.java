@@ -38,12 +38,18 @@ import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
 import javax.inject.Inject;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -56,6 +62,13 @@ import java.util.logging.Logger;
 public class WorkloadReporter extends PeriodicWork {
     private static final Logger LOGGER = Logger.getLogger(WorkloadReporter.class.getName());
 
+    private volatile @Nonnull CompletableFuture<?> lastReport = CompletableFuture.completedFuture(null);
+
+    // Most recent report per cloud name. Next report is sent once the previous one completes so they can not overtake
+    // each other, and it is skipped in case newer report was taken in the meantime.
+    @GuardedBy("this")
+    private final @Nonnull Map<String, CompletableFuture<?>> pendingReports = new HashMap<>();
+
     @Override
     public long getRecurrencePeriod() {
         return 3 * MIN;
@@ -99,10 +112,87 @@ public class WorkloadReporter extends PeriodicWork {
             }
         }
 
+        // Report to all orchestrators at once not to park the timer thread waiting for responses
+        List<CompletableFuture<?>> reports = new ArrayList<>();
         for (Map.Entry<SharedNodeCloud, ReportWorkloadRequest.Workload.WorkloadBuilder> entry : workloadMapping.entrySet()) {
-            ReportWorkloadRequest.Workload.WorkloadBuilder workload = entry.getValue();
-            SharedNodeCloud cloud = entry.getKey();
-            cloud.getApi().reportWorkload(workload.build());
+            reports.add(report(entry.getKey(), entry.getValue().build()));
+        }
+        lastReport = CompletableFuture.allOf(reports.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private synchronized @Nonnull CompletableFuture<?> report(
+            @Nonnull final SharedNodeCloud cloud, @Nonnull final ReportWorkloadRequest.Workload workload
+    ) {
+        final CompletableFuture<Object> report = new CompletableFuture<>();
+
+        // Resolve on the calling thread as the report itself is sent from the thread that completed the previous one,
+        // which does not run as SYSTEM
+        final Api api;
+        try {
+            api = cloud.getApi();
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Failed reporting workload for cloud " + cloud.name, ex);
+            report.completeExceptionally(ex);
+            return report;
+        }
+
+        CompletableFuture<?> previous = pendingReports.put(cloud.name, report);
+        if (previous == null) {
+            previous = CompletableFuture.completedFuture(null);
+        }
+
+        previous.whenComplete(new BiConsumer<Object, Throwable>() {
+            @Override public void accept(Object ignored, Throwable ignoredEx) {
+                if (!isPending(cloud.name, report)) {
+                    LOGGER.fine("Skipping stale workload report for cloud " + cloud.name);
+                    report.complete(null);
+                    return;
+                }
+
+                try {
+                    api.reportWorkloadAsync(workload).whenComplete(new BiConsumer<Object, Throwable>() {
+                        @Override public void accept(Object response, Throwable ex) {
+                            completeReport(cloud, report, response, ex);
+                        }
+                    });
+                } catch (RuntimeException ex) {
+                    // Complete the report no matter what, later reports for the cloud would wait for it forever
+                    completeReport(cloud, report, null, ex);
+                }
+            }
+        });
+        return report;
+    }
+
+    private void completeReport(
+            @Nonnull SharedNodeCloud cloud, @Nonnull CompletableFuture<Object> report, Object response, Throwable ex
+    ) {
+        if (ex != null) {
+            LOGGER.log(Level.WARNING, "Failed reporting workload for cloud " + cloud.name, ex);
+        }
+        synchronized (this) {
+            pendingReports.remove(cloud.name, report);
+        }
+        if (ex == null) {
+            report.complete(response);
+        } else {
+            report.completeExceptionally(ex);
+        }
+    }
+
+    // Report is stale when newer one was taken for the same cloud while waiting for the previous one to complete
+    private synchronized boolean isPending(@Nonnull String cloudName, @Nonnull CompletableFuture<?> report) {
+        return pendingReports.get(cloudName) == report;
+    }
+
+    /**
+     * Wait for the most recent report to be delivered to all orchestrators.
+     */
+    /*package*/ void awaitLastReport() throws InterruptedException {
+        try {
+            lastReport.get();
+        } catch (ExecutionException e) {
+            // Logged already
         }
     }
 
@@ -156,6 +246,11 @@ public class WorkloadReporter extends PeriodicWork {
 
         public void update() {
             safeTimerTask.run();
+            try {
+                wr.awaitLastReport();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 }